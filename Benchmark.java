@@ -0,0 +1,176 @@
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.IntSupplier;
+
+// Micro-benchmarks for the load / train / predict / recommend pipeline.
+// Datasets are synthesized by resampling rows of the real CSV, so the schema and value
+// distributions match production data at any size.
+//
+//   java -cp bin Benchmark [rows ...]        defaults to 10k, 100k, 1M and 10M rows (10M needs -Xmx4g)
+//   mvn -B verify -Pbench [-Dbench.args="10000 1000000"] [-Dbench.heap=8g]
+//   -Dbench.warmup=2 -Dbench.iterations=5 -Dbench.source=trimmed_anxiety_dataset.csv
+public class Benchmark {
+
+    private static final int WARMUP = Integer.getInteger("bench.warmup", 2);
+    private static final int ITERATIONS = Integer.getInteger("bench.iterations", 5);
+    private static final String SOURCE = System.getProperty("bench.source", "trimmed_anxiety_dataset.csv");
+
+    private static final long MAP_ROW_BYTES = 1024; // rough heap cost of one row as a HashMap
+
+    private static volatile int sink; // keeps results alive so work is not optimized away
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length == 0 ? new int[] {10_000, 100_000, 1_000_000, 10_000_000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i].replace("_", ""));
+
+        List<String> lines = Files.readAllLines(Paths.get(SOURCE));
+        String header = lines.get(0);
+        List<String> sourceRows = lines.subList(1, lines.size());
+
+        System.out.printf("%-28s %10s %12s %14s %14s %8s%n",
+            "benchmark", "rows", "ms/op", "alloc MB/s", "alloc B/op", "gc/op");
+
+        for (int size : sizes) {
+            Path csv = synthesize(header, sourceRows, size);
+            try {
+                runSuite(csv, size);
+            } finally {
+                Files.deleteIfExists(csv);
+            }
+        }
+    }
+
+    private static void runSuite(Path csv, int size) {
+        DataProcessorImpl dp = new DataProcessorImpl();
+        String path = csv.toString();
+
+        run("loadDataset (mapped)", size, () -> dp.loadColumnarDataset(path).numRows());
+        // Map rows need several times the heap of the columns; say so rather than fail with OOM
+        long mapBytes = (long) size * MAP_ROW_BYTES;
+        if (mapBytes < Runtime.getRuntime().maxMemory() / 2) {
+            run("loadDataset (maps)", size, () -> dp.loadDataset(path).size());
+        } else {
+            System.out.printf("%-28s %10d   skipped: needs about %d MB of heap%n",
+                "loadDataset (maps)", size, 2 * mapBytes >> 20);
+        }
+
+        ColumnarDataset raw = dp.loadColumnarDataset(path);
+        run("filterData", size, () -> dp.filterData(raw).numRows());
+
+        ColumnarDataset data = dp.filterData(raw);
+        data.sortedIndex(0); // presort cost is reported by buildTree on a fresh copy below
+
+        run("buildTree depth=10", size, () -> {
+            ColumnarDataset fresh = data.select(identity(data.numRows()));
+            return new DecisionTreeModel(10, 30).buildTree(fresh, 0).predicted_class;
+        });
+
+        run("forest.train 10x10", size, () -> {
+            RandomForestModel forest = new RandomForestModel(10, 10, 30, 1L);
+            forest.setProgressListener(null);
+            forest.train(data);
+            return forest.getCompiled().numNodes();
+        });
+
+        BinnedDataset binned = BinnedDataset.of(data);
+        run("forest.train 10x10 binned", size, () -> {
+            RandomForestModel forest = new RandomForestModel(10, 10, 30, 1L);
+            forest.setProgressListener(null);
+            forest.train(binned);
+            return forest.getCompiled().numNodes();
+        });
+
+        RandomForestModel forest = new RandomForestModel(10, 10, 30, 1L);
+        forest.setProgressListener(null);
+        forest.train(data);
+
+        int scored = Math.min(size, 100_000);
+        double[][] rows = new double[scored][data.numFeatures()];
+        for (int i = 0; i < scored; i++) data.row(i, rows[i]);
+        int[] out = new int[scored];
+
+        run("predict x" + scored, size, () -> {
+            int acc = 0;
+            for (double[] row : rows) acc += forest.predict(row);
+            return acc;
+        });
+        run("predictAll x" + scored, size, () -> {
+            forest.predictAll(rows, out);
+            return out[scored - 1];
+        });
+
+        RecommendationEngineImpl re = new RecommendationEngineImpl();
+        List<Map<String, Object>> users = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Map<String, Object> user = data.toRowMap(i % data.numRows());
+            user.put("Stress level", 1);
+            users.add(user);
+        }
+        re.generateRecommendations(users.get(0), data); // index build is a one-off per dataset
+        run("recommend x100", size, () -> {
+            int acc = 0;
+            for (Map<String, Object> user : users) acc += re.generateRecommendations(user, data).size();
+            return acc;
+        });
+    }
+
+    private static void run(String name, int size, IntSupplier op) {
+        for (int i = 0; i < WARMUP; i++) sink += op.getAsInt();
+
+        long gcBefore = gcCount();
+        long allocBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) sink += op.getAsInt();
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocBefore;
+        long gcs = gcCount() - gcBefore;
+
+        double msPerOp = elapsed / 1e6 / ITERATIONS;
+        double mbPerSec = allocated / 1048576.0 / (elapsed / 1e9);
+        System.out.printf("%-28s %10d %12.3f %14.1f %14d %8.1f%n",
+            name, size, msPerOp, mbPerSec, allocated / ITERATIONS, gcs / (double) ITERATIONS);
+    }
+
+    // Bytes allocated so far by every live thread (pool workers included)
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static int[] identity(int n) {
+        int[] rows = new int[n];
+        for (int i = 0; i < n; i++) rows[i] = i;
+        return rows;
+    }
+
+    // Writes `size` rows drawn with replacement from the real data (fixed seed)
+    private static Path synthesize(String header, List<String> sourceRows, int size) throws IOException {
+        Path file = Files.createTempFile("bench-" + size + "-", ".csv");
+        Random rand = new Random(size);
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write(header);
+            writer.newLine();
+            for (int i = 0; i < size; i++) {
+                writer.write(sourceRows.get(rand.nextInt(sourceRows.size())));
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+}
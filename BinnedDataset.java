@@ -0,0 +1,289 @@
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Training data quantized to at most 255 value bins per feature, one byte per cell
+// (8x smaller than double columns). Bins follow value order, so "bin <= b" picks the same
+// rows as "value <= largest value in b", and trees trained on bins apply to raw values.
+// Missing values get their own bin, MISSING_BIN, which always sorts last.
+//
+// Heap cost of histogram training, per row: one byte per feature for the bins plus 4 for the
+// label, and about 12 more per tree being grown at once (bootstrap weights plus the splitter's
+// row order and scratch arrays), so numFeatures + 4 + 12 * threads bytes. Binning an off-heap
+// column adds 8 bytes per row for that one column while its bins are found, unless it has at
+// most MAX_BINS distinct values.
+public class BinnedDataset {
+
+    public static final int MAX_BINS = 255;
+    public static final int MISSING_BIN = 255;
+
+    // Off-heap values read into the heap at a time by of(OffHeapDataset)
+    static final int CHUNK_ROWS = 8192;
+
+    private final String[] featureNames;
+    private final double[][] lower;  // smallest value seen in each bin, per feature
+    private final double[][] upper;  // largest value seen in each bin, per feature
+    private final byte[][] bins;     // bin of every cell, read as unsigned
+    private final int[] labels;      // -1 = missing / invalid label
+    private final int numClasses;
+
+    BinnedDataset(String[] featureNames, double[][] lower, double[][] upper, byte[][] bins, int[] labels) {
+        this(featureNames, lower, upper, bins, labels, maxLabel(labels) + 1);
+    }
+
+    // numClasses given explicitly, e.g. for bin edges without rows (see OutOfCoreTrainer)
+    BinnedDataset(String[] featureNames, double[][] lower, double[][] upper, byte[][] bins, int[] labels, int numClasses) {
+        this.featureNames = featureNames;
+        this.lower = lower;
+        this.upper = upper;
+        this.bins = bins;
+        this.labels = labels;
+        this.numClasses = numClasses;
+    }
+
+    private static int maxLabel(int[] labels) {
+        int max = -1;
+        for (int label : labels) {
+            if (label > max) max = label;
+        }
+        return max;
+    }
+
+    // Quantizes every feature of the dataset; one feature at a time is sorted to find its bins
+    public static BinnedDataset of(ColumnarDataset data) {
+        return of(data, new BitSet());
+    }
+
+    // Bins found from the rows outside `exclude` only, so a held-out fold does not shape the
+    // bins its forest is trained on; excluded rows are still binned with them
+    static BinnedDataset of(ColumnarDataset data, BitSet exclude) {
+        int numFeatures = data.numFeatures();
+        double[][] lower = new double[numFeatures][];
+        double[][] upper = new double[numFeatures][];
+        byte[][] bins = new byte[numFeatures][];
+
+        for (int f = 0; f < numFeatures; f++) {
+            double[] column = data.column(f);
+            double[][] edges = binEdges(exclude.isEmpty() ? column : without(column, exclude));
+            lower[f] = edges[0];
+            upper[f] = edges[1];
+            bins[f] = new byte[column.length];
+            for (int row = 0; row < column.length; row++) {
+                bins[f][row] = (byte) binOf(column[row], upper[f]);
+            }
+        }
+        return new BinnedDataset(data.getFeatureNames(), lower, upper, bins, data.labels());
+    }
+
+    private static double[] without(double[] column, BitSet exclude) {
+        double[] kept = new double[column.length];
+        int n = 0;
+        for (int row = exclude.nextClearBit(0); row < column.length; row = exclude.nextClearBit(row + 1)) {
+            kept[n++] = column[row];
+        }
+        return Arrays.copyOf(kept, n);
+    }
+
+    // Same bins for off-heap columns, read CHUNK_ROWS values at a time; the columns themselves
+    // are never copied to the heap
+    public static BinnedDataset of(OffHeapDataset data) {
+        int numFeatures = data.numFeatures();
+        int rows = data.numRows();
+        double[][] lower = new double[numFeatures][];
+        double[][] upper = new double[numFeatures][];
+        byte[][] bins = new byte[numFeatures][];
+
+        double[] chunk = new double[Math.min(rows, CHUNK_ROWS)];
+        for (int f = 0; f < numFeatures; f++) {
+            DoubleBuffer column = data.column(f);
+            double[][] edges = binEdges(column, rows, chunk);
+            lower[f] = edges[0];
+            upper[f] = edges[1];
+            bins[f] = new byte[rows];
+            for (int start = 0; start < rows; start += chunk.length) {
+                int length = Math.min(chunk.length, rows - start);
+                column.get(start, chunk, 0, length);
+                for (int i = 0; i < length; i++) {
+                    bins[f][start + i] = (byte) binOf(chunk[i], upper[f]);
+                }
+            }
+        }
+        return new BinnedDataset(data.getFeatureNames(), lower, upper, bins, data.labels());
+    }
+
+    // binEdges of the first rows values of an off-heap column. A column with at most MAX_BINS
+    // distinct values gets one bin per value straight from a scan; only a column with more is
+    // copied (without its missing values) so it can be sorted.
+    static double[][] binEdges(DoubleBuffer column, int rows, double[] chunk) {
+        double[] lo = new double[MAX_BINS];
+        double[] hi = new double[MAX_BINS];
+        int distinct = 0;
+        scan:
+        for (int start = 0; start < rows; start += chunk.length) {
+            int length = Math.min(chunk.length, rows - start);
+            column.get(start, chunk, 0, length);
+            for (int i = 0; i < length; i++) {
+                double v = chunk[i];
+                if (Double.isNaN(v)) continue;
+                int at = Arrays.binarySearch(hi, 0, distinct, v);
+                if (at < 0) {
+                    at = -at - 1;
+                    // binarySearch tells -0.0 from 0.0, but like a sort they share one bin
+                    if (at > 0 && hi[at - 1] == v) {
+                        at--;
+                    } else if (at == distinct || hi[at] != v) {
+                        if (distinct == MAX_BINS) {
+                            distinct = -1;
+                            break scan;
+                        }
+                        System.arraycopy(lo, at, lo, at + 1, distinct - at);
+                        System.arraycopy(hi, at, hi, at + 1, distinct - at);
+                        lo[at] = v;
+                        hi[at] = v;
+                        distinct++;
+                        continue;
+                    }
+                }
+                lo[at] = Math.min(lo[at], v);
+                hi[at] = Math.max(hi[at], v);
+            }
+        }
+        if (distinct >= 0) return new double[][] {Arrays.copyOf(lo, distinct), Arrays.copyOf(hi, distinct)};
+
+        double[] sorted = new double[rows];
+        int n = 0;
+        for (int start = 0; start < rows; start += chunk.length) {
+            int length = Math.min(chunk.length, rows - start);
+            column.get(start, chunk, 0, length);
+            for (int i = 0; i < length; i++) {
+                if (!Double.isNaN(chunk[i])) sorted[n++] = chunk[i];
+            }
+        }
+        Arrays.sort(sorted, 0, n);
+        return sortedBinEdges(sorted, n);
+    }
+
+    // {lower, upper} value of each bin. Every distinct value gets its own bin when there are at
+    // most MAX_BINS of them; otherwise bins hold about equal row counts, equal values never
+    // straddle two bins, and a value heavier than a bin's share gets a bin to itself.
+    static double[][] binEdges(double[] values) {
+        double[] sorted = new double[values.length];
+        int n = 0;
+        for (double v : values) {
+            if (!Double.isNaN(v)) sorted[n++] = v;
+        }
+        Arrays.sort(sorted, 0, n);
+        return sortedBinEdges(sorted, n);
+    }
+
+    // binEdges of the first n values of sorted, which hold no NaN
+    private static double[][] sortedBinEdges(double[] sorted, int n) {
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || sorted[i - 1] < sorted[i]) distinct++;
+        }
+
+        double[] lo = new double[Math.min(distinct, MAX_BINS)];
+        double[] hi = new double[lo.length];
+        int count = 0;
+        int start = 0;
+        while (start < n) {
+            // Even share of the rows still left over the bins still left
+            int binsLeft = MAX_BINS - count;
+            int end = distinct <= MAX_BINS ? start + 1 : start + (n - start + binsLeft - 1) / binsLeft;
+            if (end < n && !(sorted[end - 1] < sorted[end])) {
+                // The cut falls inside a run of equal values: end the bin before the run, or
+                // when the run starts the bin, take all of it
+                int runStart = end - 1;
+                while (runStart > start && !(sorted[runStart - 1] < sorted[runStart])) runStart--;
+                if (runStart > start) {
+                    end = runStart;
+                } else {
+                    while (end < n && !(sorted[end - 1] < sorted[end])) end++;
+                }
+            }
+
+            lo[count] = sorted[start];
+            hi[count] = sorted[end - 1];
+            count++;
+            start = end;
+        }
+        return new double[][] {Arrays.copyOf(lo, count), Arrays.copyOf(hi, count)};
+    }
+
+    // First bin whose largest value is >= value; values past the last bin land in it
+    static int binOf(double value, double[] upper) {
+        if (Double.isNaN(value)) return MISSING_BIN;
+        int lo = 0;
+        int hi = upper.length - 1;
+        if (hi < 0) return MISSING_BIN;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (value <= upper[mid]) hi = mid;
+            else lo = mid + 1;
+        }
+        return lo;
+    }
+
+    public int numRows() {
+        return labels.length;
+    }
+
+    public int numFeatures() {
+        return featureNames.length;
+    }
+
+    public String[] getFeatureNames() {
+        return featureNames;
+    }
+
+    public String featureName(int feature) {
+        return featureNames[feature];
+    }
+
+    public int numBins(int feature) {
+        return upper[feature].length;
+    }
+
+    public int bin(int row, int feature) {
+        return bins[feature][row] & 0xFF;
+    }
+
+    // A stand-in row of raw values: the largest value of each cell's bin (NaN when missing).
+    // It falls on the same side as the original value of every split trained on these bins.
+    public void row(int row, double[] out) {
+        for (int f = 0; f < bins.length; f++) {
+            int bin = bins[f][row] & 0xFF;
+            out[f] = bin == MISSING_BIN ? Double.NaN : upper[f][bin];
+        }
+    }
+
+    byte[] bins(int feature) {
+        return bins[feature];
+    }
+
+    double lowerValue(int feature, int bin) {
+        return lower[feature][bin];
+    }
+
+    double upperValue(int feature, int bin) {
+        return upper[feature][bin];
+    }
+
+    // Largest value of every bin, for binOf
+    double[] upperBounds(int feature) {
+        return upper[feature];
+    }
+
+    public int[] labels() {
+        return labels;
+    }
+
+    public int label(int row) {
+        return labels[row];
+    }
+
+    public int numClasses() {
+        return numClasses;
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.Random;
+
+// A bootstrap sample described only by its seed. Row multiplicities are produced on demand
+// as integer weights, so no copy of the training rows is ever made.
+public class BootstrapSample {
+
+    public enum Mode {
+        MULTINOMIAL, // classic: one draw per labelled row, with replacement over the labelled rows
+        POISSON      // each row independently weighted Poisson(1); computable per row, streaming friendly
+    }
+
+    private static final double EXP_MINUS_ONE = Math.exp(-1.0);
+
+    private final long seed;
+    private final Mode mode;
+
+    public BootstrapSample(long seed, Mode mode) {
+        this.seed = seed;
+        this.mode = mode;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    // Weight of every row in the dataset; rows without a label always get 0
+    public int[] weights(ColumnarDataset data) {
+        return weights(data.labels());
+    }
+
+    public int[] weights(int[] labels) {
+        int n = labels.length;
+        int[] weights = new int[n];
+
+        if (mode == Mode.POISSON) {
+            for (int row = 0; row < n; row++) {
+                if (labels[row] >= 0) weights[row] = poissonWeight(row);
+            }
+            return weights;
+        }
+
+        int[] validRows = new int[n];
+        int numValid = 0;
+        for (int row = 0; row < n; row++) {
+            if (labels[row] >= 0) validRows[numValid++] = row;
+        }
+        if (numValid == 0) return weights;
+
+        // Unlabelled rows (including rows held out by train(data, holdout)) do not add draws
+        Random rand = new Random(seed);
+        for (int j = 0; j < numValid; j++) {
+            weights[validRows[rand.nextInt(numValid)]]++;
+        }
+        return weights;
+    }
+
+    // Poisson(1) draw for one row, derived from (seed, row) alone
+    public int poissonWeight(long row) {
+        double u = (mix(seed ^ mix(row)) >>> 11) * 0x1.0p-53;
+        int k = 0;
+        double p = EXP_MINUS_ONE;
+        double cdf = p;
+        while (u > cdf && k < 32) {
+            k++;
+            p /= k;
+            cdf += p;
+        }
+        return k;
+    }
+
+    // SplitMix64 finalizer
+    static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
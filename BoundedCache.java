@@ -0,0 +1,134 @@
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Thread-safe LRU cache keyed on feature vectors, bounded by entry count and optionally by age.
+// Every entry remembers the object it was computed from (a model or dataset) and that object's
+// version; a lookup for a different owner or version is a miss and drops the stale entry.
+public class BoundedCache<V> {
+
+    // Canonical key for a feature vector: raw bits, with every NaN and both zeros collapsed
+    public static final class Key {
+        private final long[] bits;
+        private final int hash;
+
+        private Key(long[] bits) {
+            this.bits = bits;
+            this.hash = Arrays.hashCode(bits);
+        }
+
+        public static Key of(double... values) {
+            long[] bits = new long[values.length];
+            for (int i = 0; i < values.length; i++) {
+                double v = values[i] == 0.0 ? 0.0 : values[i];
+                bits[i] = Double.doubleToLongBits(v);
+            }
+            return new Key(bits);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).hash == hash && Arrays.equals(((Key) o).bits, bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry<V> {
+        final WeakReference<Object> owner;
+        final long version;
+        final long createdNanos;
+        final V value;
+
+        Entry(Object owner, long version, long createdNanos, V value) {
+            this.owner = new WeakReference<>(owner);
+            this.version = version;
+            this.createdNanos = createdNanos;
+            this.value = value;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<Key, Entry<V>> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;  // dropped for size
+    private long expirations; // dropped for age or a changed owner / version
+
+    // ttlMillis <= 0 keeps entries until they are evicted for size
+    public BoundedCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = ttlMillis <= 0 ? Long.MAX_VALUE : ttlMillis * 1_000_000L;
+        this.entries = new LinkedHashMap<Key, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry<V>> eldest) {
+                if (size() <= BoundedCache.this.maxEntries) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    // Cached value for the key if it was computed from this owner at this version, else null
+    public synchronized V get(Key key, Object owner, long version) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (entry.owner.get() != owner || entry.version != version
+                || System.nanoTime() - entry.createdNanos > ttlNanos) {
+            entries.remove(key);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    public synchronized void put(Key key, Object owner, long version, V value) {
+        entries.put(key, new Entry<>(owner, version, System.nanoTime(), value));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public synchronized long expirations() {
+        return expirations;
+    }
+
+    public synchronized double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : hits / (double) lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d hits, %d misses (%.0f%% hit rate), %d entries, %d evicted, %d expired",
+            hits, misses, hitRate() * 100, entries.size(), evictions, expirations);
+    }
+}
@@ -0,0 +1,160 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.*;
+
+// Scores a CSV of any size with constant memory. The input is read in line-aligned chunks;
+// chunks are parsed and scored in parallel, and written back in input order with the
+// prediction appended as a new last column.
+public class BulkScorer {
+
+    public static final String OUTPUT_COLUMN = "Predicted stress level";
+
+    private final RandomForestModel forest;
+    private final int chunkBytes;
+    private final int parallelism;
+
+    public BulkScorer(RandomForestModel forest) {
+        this(forest, 4 << 20, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BulkScorer(RandomForestModel forest, int chunkBytes, int parallelism) {
+        this.forest = forest;
+        this.chunkBytes = Math.max(1024, chunkBytes);
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    // Returns the number of rows scored
+    public long score(Path input, Path output) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(input), 1 << 16);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), 1 << 16)) {
+
+            String headerLine = readLine(in);
+            if (headerLine == null) return 0;
+            MappedCsvLoader.Header header = MappedCsvLoader.Header.parse(headerLine.strip());
+            out.write((headerLine.strip() + "," + OUTPUT_COLUMN + "\n").getBytes(StandardCharsets.UTF_8));
+
+            // At most 2 chunks per worker are buffered at any time
+            Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+            long rows = 0;
+            byte[] carry = new byte[0];
+            boolean eof = false;
+
+            while (!eof) {
+                // Next block of about chunkBytes, starting with the previous block's partial line
+                byte[] buf = Arrays.copyOf(carry, Math.max(chunkBytes, carry.length * 2));
+                int filled = carry.length;
+                while (filled < buf.length) {
+                    int read = in.read(buf, filled, buf.length - filled);
+                    if (read < 0) {
+                        eof = true;
+                        break;
+                    }
+                    filled += read;
+                }
+
+                int end = eof ? filled : lastNewline(buf, filled);
+                if (end <= 0) {
+                    carry = Arrays.copyOf(buf, filled); // no complete line yet
+                    continue;
+                }
+                byte[] lines = Arrays.copyOf(buf, end);
+                carry = Arrays.copyOfRange(buf, end, filled);
+
+                if (inFlight.size() >= 2 * parallelism) {
+                    rows += writeResult(inFlight.removeFirst(), out);
+                }
+                inFlight.addLast(pool.submit(() -> scoreChunk(lines, header)));
+            }
+            while (!inFlight.isEmpty()) {
+                rows += writeResult(inFlight.removeFirst(), out);
+            }
+            return rows;
+
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static long writeResult(Future<byte[]> future, OutputStream out) throws IOException {
+        try {
+            byte[] scored = future.get();
+            out.write(scored);
+            long rows = 0;
+            for (byte b : scored) {
+                if (b == '\n') rows++;
+            }
+            return rows;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scoring.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to score chunk: " + e.getCause(), e.getCause());
+        }
+    }
+
+    // Parses and scores one chunk of whole lines; returns the output lines for it
+    private byte[] scoreChunk(byte[] lines, MappedCsvLoader.Header header) {
+        ColumnarDataset chunk = MappedCsvLoader.parseChunk(ByteBuffer.wrap(lines), header);
+
+        // Forest features in model order, taken from whichever input columns carry them
+        String[] names = forest.getFeatureNames();
+        int[] source = new int[names.length];
+        for (int f = 0; f < names.length; f++) source[f] = chunk.featureIndex(names[f]);
+
+        double[][] rows = new double[chunk.numRows()][names.length];
+        for (int r = 0; r < rows.length; r++) {
+            for (int f = 0; f < names.length; f++) {
+                rows[r][f] = source[f] < 0 ? Double.NaN : chunk.value(r, source[f]);
+            }
+        }
+        int[] predictions = new int[rows.length];
+        long scoreStart = System.nanoTime();
+        forest.predictAll(rows, predictions);
+        PipelineMetrics.get().recordPredictions(System.nanoTime() - scoreStart, rows.length);
+
+        // Re-emit each data line, split exactly as parseChunk split them, plus its prediction
+        ByteArrayOutputStream out = new ByteArrayOutputStream(lines.length + rows.length * 3);
+        ByteBuffer buf = ByteBuffer.wrap(lines);
+        int row = 0;
+        int start = 0;
+        while ((start = MappedCsvLoader.skipBlankLines(buf, start, lines.length)) < lines.length) {
+            int end = MappedCsvLoader.lineEnd(buf, start, lines.length);
+            int contentEnd = end;
+            while (lines[contentEnd - 1] == '\r') contentEnd--; // the line holds a non-'\r' byte
+            out.write(lines, start, contentEnd - start);
+            out.write(',');
+            byte[] value = Integer.toString(predictions[row++]).getBytes(StandardCharsets.US_ASCII);
+            out.write(value, 0, value.length);
+            out.write('\n');
+            start = end + 1;
+        }
+        if (row != predictions.length) {
+            throw new IllegalStateException("Chunk has " + predictions.length + " rows but " + row + " lines.");
+        }
+        return out.toByteArray();
+    }
+
+    // Index just past the last '\n' in buf[0, length), or 0 when there is none
+    private static int lastNewline(byte[] buf, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buf[i] == '\n') return i + 1;
+        }
+        return 0;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') line.write(b);
+        if (b < 0 && line.size() == 0) return null;
+        String text = line.toString(StandardCharsets.UTF_8);
+        return text.startsWith("\uFEFF") ? text.substring(1) : text;
+    }
+}
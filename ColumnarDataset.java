@@ -0,0 +1,296 @@
+import java.util.*;
+
+public class ColumnarDataset {
+
+    public static final String LABEL_COLUMN = "Stress level";
+
+    private final String[] featureNames;
+    private final Map<String, Integer> schema;
+    private final double[][] columns;   // one primitive column per feature, NaN = missing
+    private final boolean[] integral;   // column held whole numbers only in the source
+    private final int[] labels;         // -1 = missing / invalid label
+    private final int numRows;
+    private int[][] sortedIndex;        // lazily built per-feature row order, shared by all trees
+
+    public ColumnarDataset(String[] featureNames, double[][] columns, boolean[] integral, int[] labels) {
+        if (featureNames.length != columns.length || featureNames.length != integral.length) {
+            throw new IllegalArgumentException("Schema and column count differ.");
+        }
+        this.featureNames = featureNames;
+        this.columns = columns;
+        this.integral = integral;
+        this.labels = labels;
+        this.numRows = labels.length;
+
+        this.schema = new HashMap<>();
+        for (int f = 0; f < featureNames.length; f++) {
+            if (columns[f].length != numRows) {
+                throw new IllegalArgumentException("Column '" + featureNames[f] + "' has wrong length.");
+            }
+            schema.put(featureNames[f], f);
+        }
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public int numFeatures() {
+        return featureNames.length;
+    }
+
+    public String[] getFeatureNames() {
+        return featureNames;
+    }
+
+    public String featureName(int feature) {
+        return featureNames[feature];
+    }
+
+    // Returns -1 when the feature is not part of the schema
+    public int featureIndex(String name) {
+        Integer idx = schema.get(name);
+        return idx == null ? -1 : idx;
+    }
+
+    public double[] column(int feature) {
+        return columns[feature];
+    }
+
+    public double value(int row, int feature) {
+        return columns[feature][row];
+    }
+
+    public boolean isIntegral(int feature) {
+        return integral[feature];
+    }
+
+    public int[] labels() {
+        return labels;
+    }
+
+    public int label(int row) {
+        return labels[row];
+    }
+
+    public int numClasses() {
+        int max = -1;
+        for (int label : labels) {
+            if (label > max) max = label;
+        }
+        return max + 1;
+    }
+
+    // Row indices ordered by ascending feature value (NaN last). Computed once and cached.
+    public synchronized int[] sortedIndex(int feature) {
+        if (sortedIndex == null) sortedIndex = new int[columns.length][];
+        if (sortedIndex[feature] == null) {
+            int[] idx = new int[numRows];
+            for (int i = 0; i < numRows; i++) idx[i] = i;
+            sortByValue(idx, columns[feature]);
+            sortedIndex[feature] = idx;
+        }
+        return sortedIndex[feature];
+    }
+
+    // Stable merge sort of row indices by their value in the given column
+    static void sortByValue(int[] idx, double[] values) {
+        int[] buf = new int[idx.length];
+        for (int width = 1; width < idx.length; width *= 2) {
+            for (int lo = 0; lo < idx.length - width; lo += 2 * width) {
+                int mid = lo + width;
+                int hi = Math.min(lo + 2 * width, idx.length);
+                if (Double.compare(values[idx[mid - 1]], values[idx[mid]]) <= 0) continue;
+
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) {
+                    buf[k++] = Double.compare(values[idx[j]], values[idx[i]]) < 0 ? idx[j++] : idx[i++];
+                }
+                while (i < mid) buf[k++] = idx[i++];
+                while (j < hi) buf[k++] = idx[j++];
+                System.arraycopy(buf, lo, idx, lo, hi - lo);
+            }
+        }
+    }
+
+    // Copies one row into a caller supplied buffer (no allocation)
+    public void row(int row, double[] out) {
+        for (int f = 0; f < columns.length; f++) {
+            out[f] = columns[f][row];
+        }
+    }
+
+    // 64-bit hash of the feature names, every value and every label, e.g. to tell whether a saved
+    // model was trained on this data. One pass over the columns; not cached.
+    public long fingerprint() {
+        long hash = BootstrapSample.mix(numRows);
+        for (int f = 0; f < columns.length; f++) {
+            long column = featureNames[f].hashCode();
+            for (double v : columns[f]) column = column * 0x9E3779B97F4A7C15L + Double.doubleToLongBits(v);
+            hash = BootstrapSample.mix(hash ^ column);
+        }
+        long labelHash = 0;
+        for (int label : labels) labelHash = labelHash * 0x9E3779B97F4A7C15L + label;
+        return BootstrapSample.mix(hash ^ labelHash);
+    }
+
+    // Encodes a map-based input into this dataset's feature order; missing values become NaN
+    public double[] encode(Map<String, Object> input) {
+        return CompiledForest.encode(featureNames, input);
+    }
+
+    // New dataset holding the given rows (in order, duplicates allowed)
+    public ColumnarDataset select(int[] rows) {
+        double[][] cols = new double[columns.length][rows.length];
+        int[] lbls = new int[rows.length];
+        for (int f = 0; f < columns.length; f++) {
+            double[] src = columns[f];
+            double[] dst = cols[f];
+            for (int i = 0; i < rows.length; i++) {
+                dst[i] = src[rows[i]];
+            }
+        }
+        for (int i = 0; i < rows.length; i++) {
+            lbls[i] = labels[rows[i]];
+        }
+        return new ColumnarDataset(featureNames, cols, integral, lbls);
+    }
+
+    // Appends datasets sharing one schema, in list order
+    public static ColumnarDataset concat(List<ColumnarDataset> parts) {
+        ColumnarDataset first = parts.get(0);
+        if (parts.size() == 1) return first;
+
+        int total = 0;
+        for (ColumnarDataset part : parts) total += part.numRows;
+
+        int numFeatures = first.numFeatures();
+        double[][] cols = new double[numFeatures][total];
+        boolean[] integral = new boolean[numFeatures];
+        Arrays.fill(integral, true);
+        int[] labels = new int[total];
+
+        int offset = 0;
+        for (ColumnarDataset part : parts) {
+            for (int f = 0; f < numFeatures; f++) {
+                System.arraycopy(part.columns[f], 0, cols[f], offset, part.numRows);
+                integral[f] &= part.integral[f];
+            }
+            System.arraycopy(part.labels, 0, labels, offset, part.numRows);
+            offset += part.numRows;
+        }
+        return new ColumnarDataset(first.featureNames, cols, integral, labels);
+    }
+
+    // Converts map rows to columns. Every key holding a Number in any row becomes a feature.
+    public static ColumnarDataset fromRows(List<Map<String, Object>> rows) {
+        LinkedHashSet<String> names = new LinkedHashSet<>();
+        for (Map<String, Object> row : rows) {
+            for (Map.Entry<String, Object> entry : row.entrySet()) {
+                if (!entry.getKey().equals(LABEL_COLUMN) && entry.getValue() instanceof Number) {
+                    names.add(entry.getKey());
+                }
+            }
+        }
+
+        String[] featureNames = names.toArray(new String[0]);
+        Arrays.sort(featureNames);
+        int n = rows.size();
+        double[][] cols = new double[featureNames.length][n];
+        boolean[] integral = new boolean[featureNames.length];
+        Arrays.fill(integral, true);
+        int[] labels = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            Map<String, Object> row = rows.get(i);
+            for (int f = 0; f < featureNames.length; f++) {
+                Object val = row.get(featureNames[f]);
+                if (val instanceof Number) {
+                    cols[f][i] = ((Number) val).doubleValue();
+                    if (!(val instanceof Integer || val instanceof Long)) integral[f] = false;
+                } else {
+                    cols[f][i] = Double.NaN;
+                }
+            }
+            Object label = row.get(LABEL_COLUMN);
+            labels[i] = (label instanceof Integer) ? (Integer) label : -1;
+        }
+
+        return new ColumnarDataset(featureNames, cols, integral, labels);
+    }
+
+    // Materializes the map view used by the legacy API
+    public Map<String, Object> toRowMap(int row) {
+        Map<String, Object> map = new HashMap<>();
+        for (int f = 0; f < featureNames.length; f++) {
+            double v = columns[f][row];
+            if (Double.isNaN(v)) continue;
+            map.put(featureNames[f], integral[f] ? (Object) (int) v : (Object) v);
+        }
+        if (labels[row] >= 0) map.put(LABEL_COLUMN, labels[row]);
+        return map;
+    }
+
+    public List<Map<String, Object>> toRows() {
+        List<Map<String, Object>> rows = new ArrayList<>(numRows);
+        for (int i = 0; i < numRows; i++) {
+            rows.add(toRowMap(i));
+        }
+        return rows;
+    }
+
+    // Growable column buffers used while parsing
+    public static class Builder {
+        private final String[] featureNames;
+        private double[][] cols;
+        private final boolean[] integral;
+        private int[] labels;
+        private int size;
+
+        public Builder(String[] featureNames, int initialCapacity) {
+            this.featureNames = featureNames;
+            int cap = Math.max(16, initialCapacity);
+            this.cols = new double[featureNames.length][cap];
+            this.integral = new boolean[featureNames.length];
+            Arrays.fill(integral, true);
+            this.labels = new int[cap];
+        }
+
+        // Starts a new row; all values default to NaN and the label to -1
+        public int addRow() {
+            if (size == labels.length) {
+                int cap = labels.length * 2;
+                for (int f = 0; f < cols.length; f++) {
+                    cols[f] = Arrays.copyOf(cols[f], cap);
+                }
+                labels = Arrays.copyOf(labels, cap);
+            }
+            for (double[] col : cols) {
+                col[size] = Double.NaN;
+            }
+            labels[size] = -1;
+            return size++;
+        }
+
+        public void set(int row, int feature, double value, boolean wholeNumber) {
+            cols[feature][row] = value;
+            if (!wholeNumber) integral[feature] = false;
+        }
+
+        public void setLabel(int row, int label) {
+            labels[row] = label;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public ColumnarDataset build() {
+            double[][] trimmed = new double[cols.length][];
+            for (int f = 0; f < cols.length; f++) {
+                trimmed[f] = Arrays.copyOf(cols[f], size);
+            }
+            return new ColumnarDataset(featureNames, trimmed, integral, Arrays.copyOf(labels, size));
+        }
+    }
+}
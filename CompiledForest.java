@@ -0,0 +1,321 @@
+import java.io.IOException;
+import java.util.*;
+
+// Inference form of a forest: every node of every tree lives in parallel primitive arrays,
+// laid out in depth-first order so a left child directly follows its parent.
+public class CompiledForest {
+
+    private static final int BLOCK_SIZE = 256;
+
+    // Most classes a forest read from outside (snapshot, worker reply) may have
+    static final int MAX_CLASSES = 1 << 16;
+
+    private final String[] featureNames;
+    private final int numClasses;
+
+    private final int[] roots;
+    private final int[] feature;      // -1 marks a leaf
+    private final double[] threshold;
+    private final int[] left;
+    private final int[] right;
+    private final int[] leafClass;    // leaf prediction, or the majority fallback for missing values
+
+    private final ThreadLocal<int[]> voteScratch;
+
+    public CompiledForest(String[] featureNames, int numClasses, int[] roots, int[] feature,
+                          double[] threshold, int[] left, int[] right, int[] leafClass) {
+        this.featureNames = featureNames;
+        this.numClasses = numClasses;
+        this.roots = roots;
+        this.feature = feature;
+        this.threshold = threshold;
+        this.left = left;
+        this.right = right;
+        this.leafClass = leafClass;
+        this.voteScratch = ThreadLocal.withInitial(() -> new int[Math.max(numClasses, 1)]);
+    }
+
+    // Checks node arrays read from a snapshot file or a worker before they become a forest: roots,
+    // split features, children and leaf classes must be in range, and children must follow their
+    // parent as compile() lays them out, so no tree can loop
+    static void checkNodes(int numFeatures, int numClasses, int[] roots, int[] feature,
+                           int[] left, int[] right, int[] leafClass) throws IOException {
+        int nodes = feature.length;
+        if (numClasses < 0 || numClasses > MAX_CLASSES) throw new IOException("Bad class count " + numClasses + ".");
+        for (int root : roots) {
+            if (root < 0 || root >= nodes) throw new IOException("Bad root " + root + " of " + nodes + " nodes.");
+        }
+        for (int n = 0; n < nodes; n++) {
+            if (leafClass[n] < -1 || leafClass[n] >= numClasses) throw new IOException("Bad class at node " + n + ".");
+            if (feature[n] < 0) continue;
+            if (feature[n] >= numFeatures || left[n] <= n || left[n] >= nodes || right[n] <= n || right[n] >= nodes) {
+                throw new IOException("Bad split at node " + n + ".");
+            }
+        }
+    }
+
+    public static CompiledForest compile(List<DecisionTreeNode> trees, String[] featureNames) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int f = 0; f < featureNames.length; f++) {
+            index.put(featureNames[f], f);
+        }
+
+        int total = 0;
+        for (DecisionTreeNode root : trees) total += countNodes(root);
+
+        int[] roots = new int[trees.size()];
+        int[] feature = new int[total];
+        double[] threshold = new double[total];
+        int[] left = new int[total];
+        int[] right = new int[total];
+        int[] leafClass = new int[total];
+        int maxClass = -1;
+
+        int next = 0;
+        Deque<DecisionTreeNode> stack = new ArrayDeque<>();
+        Deque<Integer> slots = new ArrayDeque<>(); // parent slot to patch with the right child
+
+        for (int t = 0; t < trees.size(); t++) {
+            roots[t] = next;
+            stack.push(trees.get(t));
+            slots.push(-1);
+
+            while (!stack.isEmpty()) {
+                DecisionTreeNode node = stack.pop();
+                int parent = slots.pop();
+                int id = next++;
+                if (parent >= 0) right[parent] = id;
+
+                leafClass[id] = node.predicted_class;
+                maxClass = Math.max(maxClass, node.predicted_class);
+
+                if (node.isLeaf()) {
+                    feature[id] = -1;
+                    continue;
+                }
+
+                Integer f = index.get(node.split_feature);
+                if (f == null) {
+                    throw new IllegalArgumentException("Unknown split feature: " + node.split_feature);
+                }
+                feature[id] = f;
+                threshold[id] = node.threshold;
+                left[id] = id + 1;
+
+                // Right is pushed first so the left subtree is laid out next to its parent
+                stack.push(node.right);
+                slots.push(id);
+                stack.push(node.left);
+                slots.push(-1);
+            }
+        }
+
+        return new CompiledForest(featureNames, maxClass + 1, roots, feature, threshold, left, right, leafClass);
+    }
+
+    private static int countNodes(DecisionTreeNode root) {
+        int count = 0;
+        Deque<DecisionTreeNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            DecisionTreeNode node = stack.pop();
+            count++;
+            if (!node.isLeaf()) {
+                stack.push(node.left);
+                stack.push(node.right);
+            }
+        }
+        return count;
+    }
+
+    // Rebuilds the linked node graph, e.g. for a forest loaded from a snapshot
+    public List<DecisionTreeNode> toTrees() {
+        List<DecisionTreeNode> trees = new ArrayList<>(roots.length);
+        for (int root : roots) {
+            trees.add(toNode(root));
+        }
+        return trees;
+    }
+
+    private DecisionTreeNode toNode(int n) {
+        DecisionTreeNode node = new DecisionTreeNode();
+        node.predicted_class = leafClass[n];
+        node.is_leaf = feature[n] < 0;
+        if (!node.is_leaf) {
+            node.split_feature = featureNames[feature[n]];
+            node.threshold = threshold[n];
+            node.left = toNode(left[n]);
+            node.right = toNode(right[n]);
+        }
+        return node;
+    }
+
+    // Raw node arrays, shared with ModelSnapshot
+    int[] roots() { return roots; }
+    int[] features() { return feature; }
+    double[] thresholds() { return threshold; }
+    int[] lefts() { return left; }
+    int[] rights() { return right; }
+    int[] leafClasses() { return leafClass; }
+
+    public int numTrees() {
+        return roots.length;
+    }
+
+    public int numNodes() {
+        return feature.length;
+    }
+
+    // Bytes held by the node arrays
+    public long memoryBytes() {
+        return roots.length * 4L + feature.length * (4L * 4 + 8);
+    }
+
+    public int numClasses() {
+        return numClasses;
+    }
+
+    public String[] getFeatureNames() {
+        return featureNames;
+    }
+
+    // Map input to the compiled feature order; missing or non-numeric values become NaN
+    public double[] encode(Map<String, Object> input) {
+        return encode(featureNames, input);
+    }
+
+    static double[] encode(String[] featureNames, Map<String, Object> input) {
+        double[] out = new double[featureNames.length];
+        for (int f = 0; f < featureNames.length; f++) {
+            Object val = input.get(featureNames[f]);
+            out[f] = (val instanceof Number) ? ((Number) val).doubleValue() : Double.NaN;
+        }
+        return out;
+    }
+
+    // Class predicted by one tree. A NaN value stops at the node and uses its majority class.
+    public int predictTree(int tree, double[] x) {
+        int n = roots[tree];
+        while (feature[n] >= 0) {
+            double v = x[feature[n]];
+            if (v <= threshold[n]) n = left[n];
+            else if (v > threshold[n]) n = right[n];
+            else break;
+        }
+        return leafClass[n];
+    }
+
+    // Majority vote without allocation; ties go to the lowest class. Stops walking trees as soon
+    // as the ones left cannot change the winner, so the result always equals the full vote.
+    public int predict(double[] x) {
+        int[] votes = voteScratch.get();
+        vote(x, votes, true);
+        return majority(votes, 0);
+    }
+
+    // Share of the voting trees behind each class (all zero when no tree voted)
+    public double[] predictProba(double[] x) {
+        int[] votes = new int[Math.max(numClasses, 1)];
+        vote(x, votes, false);
+        int total = 0;
+        for (int v : votes) total += v;
+        double[] proba = new double[votes.length];
+        for (int c = 0; c < votes.length && total > 0; c++) proba[c] = votes[c] / (double) total;
+        return proba;
+    }
+
+    // Vote share of the winning class minus that of the runner-up, in [0, 1]
+    public double margin(double[] x) {
+        double[] proba = predictProba(x);
+        double first = 0;
+        double second = 0;
+        for (double p : proba) {
+            if (p > first) {
+                second = first;
+                first = p;
+            } else if (p > second) {
+                second = p;
+            }
+        }
+        return first - second;
+    }
+
+    // Fills votes (one counter per class) and returns how many trees were walked
+    int vote(double[] x, int[] votes, boolean earlyStop) {
+        Arrays.fill(votes, 0);
+        int leader = 0;
+        for (int t = 0; t < roots.length; t++) {
+            int c = predictTree(t, x);
+            if (c < 0) continue;
+            votes[c]++;
+            if (votes[c] > votes[leader] || (votes[c] == votes[leader] && c < leader)) leader = c;
+            if (earlyStop && decided(votes, leader, roots.length - t - 1)) return t + 1;
+        }
+        return roots.length;
+    }
+
+    // True when no class can overtake (or tie a lower-numbered) leader with the remaining trees
+    private static boolean decided(int[] votes, int leader, int remaining) {
+        for (int c = 0; c < votes.length; c++) {
+            if (c == leader) continue;
+            int best = votes[c] + remaining;
+            if (best > votes[leader] || (best == votes[leader] && c < leader)) return false;
+        }
+        return true;
+    }
+
+    // Scores rows block by block, walking one tree over the whole block before the next
+    public void predictAll(double[][] rows, int[] out) {
+        int classes = Math.max(numClasses, 1);
+        int[] votes = new int[BLOCK_SIZE * classes];
+
+        for (int start = 0; start < rows.length; start += BLOCK_SIZE) {
+            int end = Math.min(start + BLOCK_SIZE, rows.length);
+            Arrays.fill(votes, 0);
+
+            for (int t = 0; t < roots.length; t++) {
+                for (int r = start; r < end; r++) {
+                    int c = predictTree(t, rows[r]);
+                    if (c >= 0) votes[(r - start) * classes + c]++;
+                }
+            }
+
+            for (int r = start; r < end; r++) {
+                out[r] = majority(votes, (r - start) * classes);
+            }
+        }
+    }
+
+    // Scores off-heap rows, copying one block at a time to the heap. Features are matched by
+    // name; ones the dataset lacks are treated as missing.
+    public void predictAll(OffHeapDataset data, int[] out) {
+        int[] source = new int[featureNames.length];
+        for (int f = 0; f < source.length; f++) source[f] = data.featureIndex(featureNames[f]);
+
+        double[][] block = new double[BLOCK_SIZE][featureNames.length];
+        int[] blockOut = new int[BLOCK_SIZE];
+        for (int start = 0; start < data.numRows(); start += BLOCK_SIZE) {
+            int end = Math.min(start + BLOCK_SIZE, data.numRows());
+            if (end - start < BLOCK_SIZE) block = Arrays.copyOf(block, end - start);
+            for (int f = 0; f < source.length; f++) {
+                for (int r = start; r < end; r++) {
+                    block[r - start][f] = source[f] < 0 ? Double.NaN : data.value(r, source[f]);
+                }
+            }
+            predictAll(block, blockOut);
+            System.arraycopy(blockOut, 0, out, start, end - start);
+        }
+    }
+
+    private int majority(int[] votes, int offset) {
+        int best = -1;
+        int bestVotes = 0;
+        for (int c = 0; c < numClasses; c++) {
+            if (votes[offset + c] > bestVotes) {
+                best = c;
+                bestVotes = votes[offset + c];
+            }
+        }
+        return best;
+    }
+}
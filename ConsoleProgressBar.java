@@ -0,0 +1,21 @@
+public class ConsoleProgressBar implements TrainingProgressListener {
+
+    private int lastPercent = -1;
+
+    @Override
+    public synchronized void onTreeBuilt(int completed, int total) {
+        int percent = (int) (completed / (double) total * 100);
+        if (percent <= lastPercent) return; // out-of-order callbacks never move the bar back
+        lastPercent = percent;
+
+        System.out.print("\rTraining trees: [" +
+            "=".repeat(percent / 2) +
+            " ".repeat(50 - percent / 2) +
+            "] " + percent + "%");
+
+        if (completed == total) {
+            System.out.println("\nRandom Forest training complete.");
+            lastPercent = -1;
+        }
+    }
+}
@@ -6,4 +6,14 @@ public interface DataProcessor {
     List<Map<String, Object>> filterData(List<Map<String, Object>> rawData);
     Map<String, List<Map<String, Object>>> splitTrainTest(List<Map<String, Object>> filteredData, double trainRatio);
     List<List<Map<String, Object>>> bootstrapData(List<Map<String, Object>> trainData, int numberOfSamples);
+
+    // Primitive column variants of the pipeline above
+    ColumnarDataset loadColumnarDataset(String filePath);
+    ColumnarDataset filterData(ColumnarDataset rawData);
+    Map<String, ColumnarDataset> splitTrainTest(ColumnarDataset filteredData, double trainRatio);
+    List<BootstrapSample> bootstrapData(ColumnarDataset trainData, int numberOfSamples, BootstrapSample.Mode mode,
+                                        long seed);
+
+    // Loads and filters the CSV chunk by chunk into an off-heap column file, then maps it
+    OffHeapDataset loadOffHeapDataset(String filePath, String columnFile);
 }
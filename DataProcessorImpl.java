@@ -1,11 +1,23 @@
 import java.io.*;
+import java.nio.file.Paths;
 import java.util.*;
 
 public class DataProcessorImpl implements DataProcessor {
 
+    // CSV bytes parsed and filtered at a time by loadOffHeapDataset
+    static final long OFF_HEAP_CHUNK_BYTES = 64L << 20;
+
+    // Features kept by filterData, in model order
+    public static final String[] SELECTED_FEATURES = {
+        "Caffeine intake", "Heart Rate", "Physical Activity", "SleepHours", "Age",
+        "Breathing Rate", "Alcohol Consumption", "Severity of Anxiety Attack",
+        "Therapy Session", "Diet Quality"
+    };
+
     @Override
     public List<Map<String, Object>> loadDataset(String filePath) {
         List<Map<String, Object>> dataset = new ArrayList<>();
+        long start = System.nanoTime();
         try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
             String headerLine = br.readLine(); // first line
             if (headerLine == null) return dataset;
@@ -28,8 +40,10 @@ public class DataProcessorImpl implements DataProcessor {
 
         } catch (IOException e) {
             System.err.println("Failed to load dataset: " + e.getMessage());
+            return dataset;
         }
 
+        PipelineMetrics.get().recordLoad(System.nanoTime() - start, dataset.size());
         return dataset;
     }
 
@@ -121,6 +135,106 @@ public List<Map<String, Object>> filterData(List<Map<String, Object>> rawData) {
         return bootstrappedSets;
     }
 
+    @Override
+    public List<BootstrapSample> bootstrapData(ColumnarDataset trainData, int numberOfSamples, BootstrapSample.Mode mode,
+                                               long seed) {
+        // Each sample is just a seed; call weights(trainData) to get its row multiplicities
+        List<BootstrapSample> samples = new ArrayList<>();
+        Random rand = new Random(seed);
+        for (int i = 0; i < numberOfSamples; i++) {
+            samples.add(new BootstrapSample(rand.nextLong(), mode));
+        }
+        return samples;
+    }
+
+    @Override
+    public ColumnarDataset loadColumnarDataset(String filePath) {
+        try {
+            long start = System.nanoTime();
+            ColumnarDataset data = new MappedCsvLoader().load(Paths.get(filePath));
+            PipelineMetrics.get().recordLoad(System.nanoTime() - start, data.numRows());
+            return data;
+        } catch (IOException e) {
+            System.err.println("Failed to load dataset: " + e.getMessage());
+            return new ColumnarDataset.Builder(new String[0], 0).build();
+        }
+    }
+
+    @Override
+    public OffHeapDataset loadOffHeapDataset(String filePath, String columnFile) {
+        try {
+            long start = System.nanoTime();
+            OffHeapDataset data = OffHeapDataset.convert(Paths.get(filePath), Paths.get(columnFile),
+                OFF_HEAP_CHUNK_BYTES, this::filterData);
+            PipelineMetrics.get().recordLoad(System.nanoTime() - start, data.numRows());
+            return data;
+        } catch (IOException e) {
+            System.err.println("Failed to load dataset: " + e.getMessage());
+            return OffHeapDataset.copyOf(new ColumnarDataset.Builder(new String[0], 0).build());
+        }
+    }
+
+    @Override
+    public ColumnarDataset filterData(ColumnarDataset rawData) {
+        int n = rawData.numRows();
+        int[] keep = new int[n];
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            int stress = rawData.label(i);
+            if (stress >= 1 && stress <= 10) keep[kept++] = i;
+        }
+
+        List<String> names = new ArrayList<>();
+        List<Integer> sources = new ArrayList<>();
+        for (String feature : SELECTED_FEATURES) {
+            int idx = rawData.featureIndex(feature);
+            if (idx >= 0) {
+                names.add(feature);
+                sources.add(idx);
+            }
+        }
+
+        double[][] cols = new double[names.size()][kept];
+        boolean[] integral = new boolean[names.size()];
+        for (int f = 0; f < names.size(); f++) {
+            double[] src = rawData.column(sources.get(f));
+            double[] dst = cols[f];
+            for (int i = 0; i < kept; i++) {
+                dst[i] = src[keep[i]];
+            }
+            integral[f] = rawData.isIntegral(sources.get(f));
+        }
+
+        // Binary stress categorization: 0 = low/moderate, 1 = high
+        int[] labels = new int[kept];
+        for (int i = 0; i < kept; i++) {
+            labels[i] = rawData.label(keep[i]) <= 5 ? 0 : 1;
+        }
+
+        return new ColumnarDataset(names.toArray(new String[0]), cols, integral, labels);
+    }
+
+    @Override
+    public Map<String, ColumnarDataset> splitTrainTest(ColumnarDataset filteredData, double trainRatio) {
+        int n = filteredData.numRows();
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+
+        Random rand = new Random();
+        for (int i = n - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+
+        int trainSize = (int) (n * trainRatio);
+        Map<String, ColumnarDataset> result = new HashMap<>();
+        result.put("train", filteredData.select(Arrays.copyOfRange(order, 0, trainSize)));
+        result.put("test", filteredData.select(Arrays.copyOfRange(order, trainSize, n)));
+        return result;
+    }
+
     // Helper method to infer value types
     private Object parseValue(String value) {
         if (value == null || value.isEmpty()) {
@@ -133,13 +247,37 @@ public List<Map<String, Object>> filterData(List<Map<String, Object>> rawData) {
         if (value.equals("yes")) return true;
         if (value.equals("no")) return false;
     
-        // Try integer first
+        // Only hand plain numerals to the parsers so text cells never throw
+        if (!looksNumeric(value)) return value;
         try {
             if (!value.contains(".")) return Integer.parseInt(value);
             return Double.parseDouble(value);
         } catch (NumberFormatException e) {
-            return value; // fallback
+            return value; // fallback, e.g. integer overflow
+        }
+    }
+
+    private static boolean looksNumeric(String value) {
+        int i = (value.charAt(0) == '-' || value.charAt(0) == '+') ? 1 : 0;
+        boolean digits = false;
+        boolean dot = false;
+        for (; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') digits = true;
+            else if (c == '.' && !dot) dot = true;
+            else if ((c == 'e') && digits && dot) return isExponent(value, i + 1);
+            else return false;
+        }
+        return digits;
+    }
+
+    private static boolean isExponent(String value, int i) {
+        if (i < value.length() && (value.charAt(i) == '-' || value.charAt(i) == '+')) i++;
+        if (i == value.length()) return false;
+        for (; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') return false;
         }
+        return true;
     }
     
 }
@@ -0,0 +1,210 @@
+import java.util.*;
+
+// Per-feature summary statistics, overall and per stress class: count, mean, variance (Welford),
+// min/max, and quantiles from a self-widening 256-bin histogram. Built in one pass over a
+// dataset and kept current with add() as new rows arrive, so no caller rescans the rows.
+public class DatasetStatistics {
+
+    // Running statistics of one feature within one group of rows. Missing values are skipped, and
+    // so are infinite ones (e.g. a "1e999" cell), which are only counted in nonFinite().
+    public static final class FeatureStats {
+        private static final int BINS = 256;
+
+        private long count;
+        private long nonFinite;
+        private double mean;
+        private double m2;
+        private double min = Double.NaN;
+        private double max = Double.NaN;
+
+        // Histogram over [origin, origin + BINS * width); width 0 until two distinct values are seen
+        private final long[] bins = new long[BINS];
+        private double origin;
+        private double width;
+
+        void add(double v) {
+            if (Double.isNaN(v)) return;
+            if (Double.isInfinite(v)) {
+                nonFinite++;
+                return;
+            }
+            count++;
+            double delta = v - mean;
+            mean += delta / count;
+            m2 += delta * (v - mean);
+            if (count == 1) {
+                min = v;
+                max = v;
+                origin = v;
+            } else {
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            bins[binFor(v)]++;
+        }
+
+        private int binFor(double v) {
+            if (width == 0) {
+                if (v == origin) return 0;
+                // Second distinct value: spread the two over a quarter of the bins
+                double lo = Math.min(origin, v);
+                width = Math.abs(v - origin) / (BINS / 4.0);
+                long atOrigin = bins[0];
+                bins[0] = 0;
+                double first = origin;
+                origin = lo;
+                bins[index(first)] += atOrigin;
+            }
+            while (v < origin) grow(true);
+            while (v >= origin + BINS * width) grow(false);
+            return index(v);
+        }
+
+        private int index(double v) {
+            return Math.min(BINS - 1, Math.max(0, (int) ((v - origin) / width)));
+        }
+
+        // Doubles the bin width by merging neighbours; downward growth moves them to the upper half
+        private void grow(boolean downward) {
+            long[] merged = new long[BINS];
+            int offset = downward ? BINS / 2 : 0;
+            for (int i = 0; i < BINS; i++) merged[offset + i / 2] += bins[i];
+            System.arraycopy(merged, 0, bins, 0, BINS);
+            if (downward) origin -= BINS * width;
+            width *= 2;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        // Infinite values seen and left out of every other statistic
+        public long nonFinite() {
+            return nonFinite;
+        }
+
+        public double mean() {
+            return count == 0 ? Double.NaN : mean;
+        }
+
+        public double variance() {
+            return count < 2 ? 0.0 : m2 / (count - 1);
+        }
+
+        public double stdDev() {
+            return Math.sqrt(variance());
+        }
+
+        public double min() {
+            return min;
+        }
+
+        public double max() {
+            return max;
+        }
+
+        // Approximate p-quantile (0..1), interpolated within a histogram bin and clamped to [min, max]
+        public double quantile(double p) {
+            if (count == 0) return Double.NaN;
+            if (width == 0) return origin;
+            double rank = Math.max(0, Math.min(1, p)) * count;
+            long seen = 0;
+            for (int i = 0; i < BINS; i++) {
+                if (bins[i] == 0) continue;
+                if (seen + bins[i] >= rank) {
+                    double within = (rank - seen) / bins[i];
+                    double value = origin + (i + within) * width;
+                    return Math.max(min, Math.min(max, value));
+                }
+                seen += bins[i];
+            }
+            return max;
+        }
+
+        public double median() {
+            return quantile(0.5);
+        }
+    }
+
+    private final String[] featureNames;
+    private final Map<String, Integer> schema = new HashMap<>();
+    private final FeatureStats[] overall;
+    private final List<FeatureStats[]> byClass = new ArrayList<>();
+    private long rows;
+
+    public DatasetStatistics(String[] featureNames) {
+        this.featureNames = featureNames.clone();
+        this.overall = newGroup();
+        for (int f = 0; f < featureNames.length; f++) schema.put(featureNames[f], f);
+    }
+
+    public static DatasetStatistics of(ColumnarDataset data) {
+        DatasetStatistics stats = new DatasetStatistics(data.getFeatureNames());
+        stats.addAll(data);
+        return stats;
+    }
+
+    private FeatureStats[] newGroup() {
+        FeatureStats[] group = new FeatureStats[featureNames.length];
+        for (int f = 0; f < group.length; f++) group[f] = new FeatureStats();
+        return group;
+    }
+
+    // One row in getFeatureNames() order (NaN = missing); label -1 counts towards overall only
+    public synchronized void add(double[] row, int label) {
+        rows++;
+        FeatureStats[] group = label >= 0 ? classGroup(label) : null;
+        for (int f = 0; f < featureNames.length; f++) {
+            overall[f].add(row[f]);
+            if (group != null) group[f].add(row[f]);
+        }
+    }
+
+    // Rows of another dataset; its features are matched by name and extra ones are ignored
+    public synchronized void addAll(ColumnarDataset data) {
+        int[] source = new int[featureNames.length];
+        for (int f = 0; f < source.length; f++) source[f] = data.featureIndex(featureNames[f]);
+
+        // Column at a time: each column is read sequentially
+        for (int f = 0; f < featureNames.length; f++) {
+            double[] column = source[f] < 0 ? null : data.column(source[f]);
+            for (int row = 0; row < data.numRows(); row++) {
+                double v = column == null ? Double.NaN : column[row];
+                overall[f].add(v);
+                int label = data.label(row);
+                if (label >= 0) classGroup(label)[f].add(v);
+            }
+        }
+        rows += data.numRows();
+    }
+
+    private FeatureStats[] classGroup(int label) {
+        while (byClass.size() <= label) byClass.add(newGroup());
+        return byClass.get(label);
+    }
+
+    public String[] getFeatureNames() {
+        return featureNames.clone();
+    }
+
+    public synchronized long numRows() {
+        return rows;
+    }
+
+    public synchronized int numClasses() {
+        return byClass.size();
+    }
+
+    // null when the feature is unknown
+    public synchronized FeatureStats overall(String feature) {
+        Integer f = schema.get(feature);
+        return f == null ? null : overall[f];
+    }
+
+    // null when the feature or class is unknown
+    public synchronized FeatureStats forClass(int label, String feature) {
+        Integer f = schema.get(feature);
+        if (f == null || label < 0 || label >= byClass.size()) return null;
+        return byClass.get(label)[f];
+    }
+}
@@ -1,61 +1,314 @@
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 public class DecisionTreeModel {
 
+    // Node sizes (rows) from which work is split into fork-join subtasks
+    static final int PARALLEL_SUBTREE_ROWS = 2_000; // left and right subtrees grow concurrently
+    static final int PARALLEL_SCAN_ROWS = 20_000;   // features are scanned / partitioned concurrently
+
     private int maxDepth;
     private int maxLeaves;
+    private int mtry;  // features searched per split; <= 0 (or >= the feature count) searches all
+    private long seed; // drives which features each node searches
+    private ForkJoinPool pool = ForkJoinPool.commonPool(); // null grows on the calling thread
 
     public DecisionTreeModel(int maxDepth, int maxLeaves) {
+        this(maxDepth, maxLeaves, 0, 0L);
+    }
+
+    public DecisionTreeModel(int maxDepth, int maxLeaves, int mtry, long seed) {
         this.maxDepth = maxDepth;
         this.maxLeaves = maxLeaves;
+        this.mtry = mtry;
+        this.seed = seed;
     }
 
-    public DecisionTreeNode buildTree(List<Map<String, Object>> data, int depth) {
+    // Trees come out the same with or without a pool
+    public void setForkJoinPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public DecisionTreeNode buildTree(ColumnarDataset data, int depth) {
+        return buildTree(data, null, depth);
+    }
+
+    // Trains on per-row integer weights (e.g. a bootstrap sample); null weighs every row 1
+    public DecisionTreeNode buildTree(ColumnarDataset data, int[] weights, int depth) {
+        SortedSplitter splitter = new SortedSplitter(data, weights, pool);
+        return grow(splitter, splitter.root(), depth);
+    }
+
+    // Same as above on quantized features: split search works on per-node class histograms
+    public DecisionTreeNode buildTree(BinnedDataset data, int[] weights, int depth) {
+        HistogramSplitter splitter = new HistogramSplitter(data, weights, pool);
+        return grow(splitter, splitter.root(), depth);
+    }
+
+    // maxLeaves > 0 grows best-first and stops at exactly that many leaves; otherwise depth-first
+    private DecisionTreeNode grow(Splitter splitter, Segment root, int depth) {
+        return maxLeaves > 0 ? growBestFirst(splitter, root, depth) : buildTree(splitter, root, depth);
+    }
+
+    private DecisionTreeNode buildTree(Splitter splitter, Segment segment, int depth) {
+        DecisionTreeNode node = newLeaf(segment);
+        if (!canSplit(splitter, node, segment, depth)) return node;
+
+        Segment[] children = splitter.split(segment);
+
+        node.is_leaf = false;
+        node.split_feature = splitter.featureName(segment.feature);
+        node.threshold = segment.threshold;
+        if (pool != null && segment.end - segment.start >= PARALLEL_SUBTREE_ROWS) {
+            DecisionTreeNode[] subtrees = new DecisionTreeNode[2];
+            forEach(pool, 2, i -> subtrees[i] = buildTree(splitter, children[i], depth + 1));
+            node.left = subtrees[0];
+            node.right = subtrees[1];
+        } else {
+            node.left = buildTree(splitter, children[0], depth + 1);
+            node.right = buildTree(splitter, children[1], depth + 1);
+        }
+        return node;
+    }
+
+    // A node that is waiting to be split, ranked by how much its best split lowers impurity
+    private static final class Candidate {
+        final DecisionTreeNode node;
+        final Segment segment;
+        final int depth;
+        final double gain;
+        final int order; // creation order breaks ties, keeping growth deterministic
+
+        Candidate(DecisionTreeNode node, Segment segment, int depth, int order) {
+            this.node = node;
+            this.segment = segment;
+            this.depth = depth;
+            this.order = order;
+            this.gain = segment.total * (gini(segment.counts, segment.total) - segment.score);
+        }
+    }
+
+    // Always splits the open node whose best split gives the largest weighted impurity decrease
+    private DecisionTreeNode growBestFirst(Splitter splitter, Segment rootSegment, int depth) {
+        PriorityQueue<Candidate> open = new PriorityQueue<>(
+            Comparator.comparingDouble((Candidate c) -> -c.gain).thenComparingInt(c -> c.order));
+        int created = 0;
+
+        DecisionTreeNode root = newLeaf(rootSegment);
+        if (canSplit(splitter, root, rootSegment, depth)) {
+            open.add(new Candidate(root, rootSegment, depth, created++));
+        }
+
+        int leaves = 1;
+        while (!open.isEmpty() && leaves < maxLeaves) {
+            Candidate next = open.poll();
+            Segment segment = next.segment;
+            Segment[] children = splitter.split(segment);
+
+            DecisionTreeNode node = next.node;
+            node.is_leaf = false;
+            node.split_feature = splitter.featureName(segment.feature);
+            node.threshold = segment.threshold;
+            node.left = newLeaf(children[0]);
+            node.right = newLeaf(children[1]);
+            leaves++;
+
+            if (canSplit(splitter, node.left, children[0], next.depth + 1)) {
+                open.add(new Candidate(node.left, children[0], next.depth + 1, created++));
+            }
+            if (canSplit(splitter, node.right, children[1], next.depth + 1)) {
+                open.add(new Candidate(node.right, children[1], next.depth + 1, created++));
+            }
+        }
+        return root;
+    }
+
+    private static DecisionTreeNode newLeaf(Segment segment) {
         DecisionTreeNode node = new DecisionTreeNode();
+        node.is_leaf = true;
+        node.predicted_class = segment.start == segment.end ? -1 : argMax(segment.counts);
+        return node;
+    }
+
+    // Chosen split of a node grown outside buildTree
+    static final class NodeSplit {
+        final int feature;
+        final double threshold;
+        final int leftBins;     // bins [0, leftBins) go left
+        final double gain;      // weighted Gini decrease
+        final int[] leftCounts;
+        final int[] rightCounts;
 
-        if (data.isEmpty()) {
-            node.is_leaf = true;
-            node.predicted_class = -1;
-            return node;
+        NodeSplit(int feature, double threshold, int leftBins, double gain, int[] leftCounts, int[] rightCounts) {
+            this.feature = feature;
+            this.threshold = threshold;
+            this.leftBins = leftBins;
+            this.gain = gain;
+            this.leftCounts = leftCounts;
+            this.rightCounts = rightCounts;
         }
+    }
 
-        Object firstVal = data.get(0).get("Stress level");
-        if (!(firstVal instanceof Integer)) {
-            node.is_leaf = true;
-            node.predicted_class = -1;
-            return node;
+    // False when a node with these weighted class counts stays a leaf whatever its rows look like
+    boolean mightSplit(int[] counts, int depth) {
+        int total = 0;
+        for (int count : counts) total += count;
+        return total > 0 && counts[argMax(counts)] < total && depth < maxDepth;
+    }
+
+    // Split for one node of a tree grown outside buildTree, e.g. level by level from streamed data
+    // (OutOfCoreTrainer): the one buildTree(BinnedDataset, ...) picks for a node at this position
+    // (id) and depth with this class histogram (feature x bin x class over the bins of edges).
+    // null when the node stays a leaf.
+    NodeSplit splitNode(BinnedDataset edges, int[] histogram, int[] counts, long id, int depth) {
+        int total = 0;
+        for (int count : counts) total += count;
+        Segment segment = new Segment(0, total, counts);
+        segment.id = id;
+        segment.histogram = histogram;
+
+        DecisionTreeNode node = newLeaf(segment);
+        if (!canSplit(new HistogramSplitter(edges, null, null), node, segment, depth)) return null;
+
+        int classes = counts.length;
+        int base = segment.feature * HistogramSplitter.BINS * classes;
+        int[] left = new int[classes];
+        for (int b = 0; b < segment.leftBins; b++) {
+            for (int c = 0; c < classes; c++) left[c] += histogram[base + b * classes + c];
         }
+        int[] right = new int[classes];
+        for (int c = 0; c < classes; c++) right[c] = counts[c] - left[c];
+        double gain = total * (gini(counts, total) - segment.score);
+        return new NodeSplit(segment.feature, segment.threshold, segment.leftBins, gain, left, right);
+    }
 
-        int firstLabel = (Integer) firstVal;
-        boolean allSame = data.stream()
-            .allMatch(row -> Objects.equals(row.get("Stress level"), firstLabel));
+    // Impure, above maxDepth, and some split separates the rows (the split is left in segment)
+    private boolean canSplit(Splitter splitter, DecisionTreeNode node, Segment segment, int depth) {
+        if (segment.start == segment.end) return false;
+        if (segment.counts[node.predicted_class] == segment.total || depth >= maxDepth) return false;
+        return findBestSplit(splitter, segment);
+    }
 
-        if (allSame) {
-            node.is_leaf = true;
-            node.predicted_class = firstLabel;
-            return node;
+    // Searches every feature, or mtry drawn at random for this node. The draw is seeded by the
+    // tree seed and the node's position, so a tree does not depend on the order nodes grow in.
+    private boolean findBestSplit(Splitter splitter, Segment segment) {
+        int n = splitter.numFeatures();
+        int[] features = new int[n];
+        for (int f = 0; f < n; f++) features[f] = f;
+        if (mtry <= 0 || mtry >= n) return search(splitter, segment, features, 0, n);
+
+        SplittableRandom rand = new SplittableRandom(BootstrapSample.mix(seed + segment.id * 0x9E3779B97F4A7C15L));
+        for (int i = 0; i < mtry; i++) {
+            int j = i + rand.nextInt(n - i);
+            int tmp = features[i];
+            features[i] = features[j];
+            features[j] = tmp;
         }
+        // Sorted so ties keep the lower feature, as in a full search
+        Arrays.sort(features, 0, mtry);
+        if (search(splitter, segment, features, 0, mtry)) return true;
+
+        // None of the drawn features separates the rows; rather than stop, try the others
+        Arrays.sort(features, mtry, n);
+        return search(splitter, segment, features, mtry, n);
+    }
 
-        if (depth >= maxDepth) {
-            node.is_leaf = true;
-            node.predicted_class = majorityClass(data);
-            return node;
+    // Lowest weighted Gini split over features[from, to); false when none of them separates the
+    // rows. Each feature is scanned on its own and the results are merged afterwards, so scanning
+    // them concurrently picks the same split. Ties keep the lower tieRank feature, then the lower
+    // threshold.
+    private boolean search(Splitter splitter, Segment segment, int[] features, int from, int to) {
+        Split[] best = new Split[to - from];
+        forEach(poolFor(pool, segment), best.length, k -> {
+            best[k] = new Split();
+            splitter.scan(segment, features[from + k], best[k]);
+        });
+
+        Split winner = null;
+        for (Split split : best) {
+            if (split.feature < 0) continue;
+            if (winner == null || split.score < winner.score
+                || (split.score == winner.score && splitter.tieRank(split.feature) < splitter.tieRank(winner.feature))) {
+                winner = split;
+            }
         }
+        if (winner == null) return false;
+        segment.feature = winner.feature;
+        segment.threshold = winner.threshold;
+        segment.score = winner.score;
+        segment.leftRows = winner.leftRows;
+        segment.leftBins = winner.leftBins;
+        return true;
+    }
 
-        SplitResult split = findBestSplit(data);
+    // The pool for per-feature work on a node, or null when the node is too small to be worth it
+    private static ForkJoinPool poolFor(ForkJoinPool pool, Segment segment) {
+        return segment.end - segment.start >= PARALLEL_SCAN_ROWS ? pool : null;
+    }
 
-        if (split == null || split.left.isEmpty() || split.right.isEmpty()) {
-            node.is_leaf = true;
-            node.predicted_class = majorityClass(data);
-            return node;
+    // Runs body for 0..n-1, as fork-join subtasks when there is a pool, else in order
+    private static void forEach(ForkJoinPool pool, int n, IntConsumer body) {
+        if (pool == null || n < 2) {
+            for (int i = 0; i < n; i++) body.accept(i);
+            return;
+        }
+        List<RecursiveAction> tasks = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            final int index = i;
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    body.accept(index);
+                }
+            });
+        }
+        if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
         }
+    }
 
-        node.split_feature = split.feature;
-        node.threshold = split.threshold;
-        node.left = buildTree(split.left, depth + 1);
-        node.right = buildTree(split.right, depth + 1);
-        return node;
+    private static double gini(int[] counts, int total) {
+        double gini = 1.0;
+        for (int count : counts) {
+            double p = (double) count / total;
+            gini -= p * p;
+        }
+        return gini;
+    }
+
+    // Order in which equally good features win a split: the order the original map-based builder
+    // visited them in (a HashSet of the names), so trees on data without missing values match it
+    static int[] tieRanks(String[] names) {
+        Set<String> visited = new HashSet<>();
+        for (String name : names) visited.add(name);
+        Map<String, Integer> position = new HashMap<>();
+        for (String name : visited) position.put(name, position.size());
+        int[] rank = new int[names.length];
+        for (int f = 0; f < names.length; f++) rank[f] = position.get(names[f]);
+        return rank;
+    }
+
+    // Lowest label wins ties, matching the map-based majority vote
+    static int argMax(int[] counts) {
+        int best = 0;
+        for (int c = 1; c < counts.length; c++) {
+            if (counts[c] > counts[best]) best = c;
+        }
+        return best;
+    }
+
+    public DecisionTreeNode buildTree(List<Map<String, Object>> data, int depth) {
+        return buildTree(ColumnarDataset.fromRows(data), depth);
     }
 
     public int predict(DecisionTreeNode root, Map<String, Object> input) {
@@ -70,135 +323,376 @@ public class DecisionTreeModel {
             : predict(root.right, input);
     }
 
-    private int majorityClass(List<Map<String, Object>> data) {
-        Map<Integer, Integer> freq = new HashMap<>();
-        for (Map<String, Object> row : data) {
-            Object label = row.get("Stress level");
-            if (label instanceof Integer) {
-                int val = (Integer) label;
-                freq.put(val, freq.getOrDefault(val, 0) + 1);
-            }
+    // The rows a node owns during growth: positions [start, end) of the splitter's row
+    // order(s), their weighted class counts, and the best split once one has been searched
+    private static final class Segment {
+        final int start;
+        final int end;
+        final int[] counts;
+        final int total;
+        long id = 1;     // position in the tree: root 1, children 2 * id and 2 * id + 1
+        int[] histogram; // HistogramSplitter only; handed over to a child on split
+
+        int feature = -1;
+        double threshold;
+        double score;   // weighted Gini of the best split
+        int leftRows;   // rows (not weight) that go left
+        int leftBins;   // HistogramSplitter only: bins [0, leftBins) go left
+
+        Segment(int start, int end, int[] counts) {
+            this.start = start;
+            this.end = end;
+            this.counts = counts;
+            int sum = 0;
+            for (int count : counts) sum += count;
+            this.total = sum;
         }
-        return freq.entrySet().stream()
-            .max(Map.Entry.comparingByValue())
-            .map(Map.Entry::getKey)
-            .orElse(-1);
     }
 
-    private SplitResult findBestSplit(List<Map<String, Object>> data) {
-        double bestGini = Double.MAX_VALUE;
-        String bestFeature = null;
-        double bestThreshold = 0;
+    // Best split found on one feature
+    private static final class Split {
+        int feature = -1;
+        double score = Double.MAX_VALUE;
+        double threshold;
+        int leftRows;
+        int leftBins;
+    }
+
+    // Splitters are safe to use from concurrent subtrees: nodes own disjoint row ranges, and
+    // scans of different features share no mutable state
+    private interface Splitter {
+        int numFeatures();
+
+        // Records the feature's lowest weighted Gini split in best, if it beats best's score
+        void scan(Segment segment, int feature, Split best);
+
+        // Moves the segment's rows into its two children {left, right}
+        Segment[] split(Segment segment);
 
-        Set<String> features = data.get(0).keySet().stream()
-            .filter(f -> !f.equals("Stress level") && data.get(0).get(f) instanceof Number)
-            .collect(Collectors.toSet());
+        String featureName(int feature);
 
-        for (String feature : features) {
-            Set<Double> thresholds = data.stream()
-                .map(row -> (Number) row.get(feature))
-                .filter(Objects::nonNull)
-                .map(Number::doubleValue)
-                .collect(Collectors.toSet());
+        // See tieRanks
+        int tieRank(int feature);
+    }
 
-            List<Double> sorted = new ArrayList<>(thresholds);
-            Collections.sort(sorted);
+    private static Segment[] children(Segment parent, Segment left, Segment right) {
+        left.id = 2 * parent.id;
+        right.id = 2 * parent.id + 1;
+        return new Segment[] {left, right};
+    }
 
-            for (int i = 1; i < sorted.size(); i++) {
-                double threshold = (sorted.get(i - 1) + sorted.get(i)) / 2.0;
-                double gini = computeSplitGini(data, feature, threshold);
+    // Gini of a candidate split (same arithmetic in both splitters, so they agree exactly)
+    private static double giniScore(int[] leftCounts, int[] totalCounts, int nLeft, int n) {
+        int nRight = n - nLeft;
+        double giniLeft = 1.0, giniRight = 1.0;
+        for (int c = 0; c < leftCounts.length; c++) {
+            double pl = (double) leftCounts[c] / nLeft;
+            double pr = (double) (totalCounts[c] - leftCounts[c]) / nRight;
+            giniLeft -= pl * pl;
+            giniRight -= pr * pr;
+        }
+        return ((double) nLeft / n) * giniLeft + ((double) nRight / n) * giniRight;
+    }
 
-                if (gini < bestGini) {
-                    bestGini = gini;
-                    bestFeature = feature;
-                    bestThreshold = threshold;
+    // Midpoint of the gap between two neighbouring values, or v if the midpoint rounds up to next
+    private static double midpoint(double v, double next) {
+        double threshold = (v + next) / 2.0;
+        return threshold < next ? threshold : v;
+    }
+
+    // Split engine over per-feature row orders that are sorted once and then partitioned
+    // in place as the tree grows. Every node owns the same [start, end) range in each order,
+    // so a split is a single cumulative class-count sweep per feature. Rows carry integer
+    // weights, which count exactly like that many duplicated rows.
+    private static final class SortedSplitter implements Splitter {
+        final ColumnarDataset data;
+        final int[] labels;
+        final int[] weights;
+        final int numClasses;
+        final int size;
+        final int[][] order;
+        final boolean[] goesLeft;
+        final int[] scratch;
+        final int[] tieRank;
+        final ForkJoinPool pool;
+
+        SortedSplitter(ColumnarDataset data, int[] weights, ForkJoinPool pool) {
+            this.data = data;
+            this.pool = pool;
+            this.labels = data.labels();
+            this.numClasses = Math.max(data.numClasses(), 1);
+            this.weights = weights != null ? weights : unitWeights(labels.length);
+
+            int valid = 0;
+            for (int row = 0; row < labels.length; row++) {
+                if (isActive(row)) valid++;
+            }
+            this.size = valid;
+
+            // Rows without a label or with zero weight take no part in training
+            this.order = new int[data.numFeatures()][];
+            for (int f = 0; f < order.length; f++) {
+                int[] sorted = data.sortedIndex(f);
+                int[] own = new int[valid];
+                int k = 0;
+                for (int row : sorted) {
+                    if (isActive(row)) own[k++] = row;
                 }
+                order[f] = own;
             }
+
+            this.goesLeft = new boolean[data.numRows()];
+            this.scratch = new int[valid];
+            this.tieRank = tieRanks(data.getFeatureNames());
         }
 
-        if (bestFeature == null) return null;
+        private boolean isActive(int row) {
+            return labels[row] >= 0 && weights[row] > 0;
+        }
 
-        // Now split the data
-        List<Map<String, Object>> left = new ArrayList<>();
-        List<Map<String, Object>> right = new ArrayList<>();
+        Segment root() {
+            int[] counts = new int[numClasses];
+            for (int row = 0; row < labels.length; row++) {
+                if (isActive(row)) counts[labels[row]] += weights[row];
+            }
+            return new Segment(0, size, counts);
+        }
 
-        for (Map<String, Object> row : data) {
-            Object val = row.get(bestFeature);
-            if (!(val instanceof Number)) continue;
+        @Override
+        public String featureName(int feature) {
+            return data.featureName(feature);
+        }
 
-            double num = ((Number) val).doubleValue();
-            if (num <= bestThreshold) left.add(row);
-            else right.add(row);
+        @Override
+        public int tieRank(int feature) {
+            return tieRank[feature];
         }
 
-        if (left.isEmpty() || right.isEmpty()) return null;
-        return new SplitResult(bestFeature, bestThreshold, left, right);
-    }
+        @Override
+        public int numFeatures() {
+            return order.length;
+        }
 
-    private double computeSplitGini(List<Map<String, Object>> data, String feature, double threshold) {
-        List<Map<String, Object>> left = new ArrayList<>();
-        List<Map<String, Object>> right = new ArrayList<>();
+        // Ties keep the earlier threshold
+        @Override
+        public void scan(Segment segment, int f, Split best) {
+            int start = segment.start;
+            int end = segment.end;
+            int n = segment.total;
+            int[] rows = order[f];
+            double[] col = data.column(f);
+            int[] leftCounts = new int[numClasses];
+            int nLeft = 0;
+
+            for (int i = start; i < end - 1; i++) {
+                int w = weights[rows[i]];
+                leftCounts[labels[rows[i]]] += w;
+                nLeft += w;
+                double v = col[rows[i]];
+                double next = col[rows[i + 1]];
+                if (!(v < next)) continue; // equal values, or NaN reached
+
+                double score = giniScore(leftCounts, segment.counts, nLeft, n);
+                if (score < best.score) {
+                    best.score = score;
+                    best.feature = f;
+                    best.threshold = midpoint(v, next);
+                    best.leftRows = i - start + 1;
+                }
+            }
+        }
 
-        for (Map<String, Object> row : data) {
-            Object val = row.get(feature);
-            if (!(val instanceof Number)) continue;
+        // Stable partition of every feature order so the left child's rows come first
+        @Override
+        public Segment[] split(Segment segment) {
+            int start = segment.start;
+            int end = segment.end;
+            int mid = start + segment.leftRows;
+            int[] splitRows = order[segment.feature];
+
+            int[] left = new int[numClasses];
+            for (int i = start; i < end; i++) {
+                int row = splitRows[i];
+                goesLeft[row] = i < mid;
+                if (i < mid) left[labels[row]] += weights[row];
+            }
 
-            double num = ((Number) val).doubleValue();
-            if (num <= threshold) left.add(row);
-            else right.add(row);
+            // Concurrent partitions each need their own buffer for the right-hand rows
+            ForkJoinPool partitionPool = poolFor(pool, segment);
+            forEach(partitionPool, order.length, f -> {
+                if (f == segment.feature) return;
+                if (partitionPool == null) partition(order[f], start, end, scratch, 0);
+                else partition(order[f], start, end, new int[end - start], start);
+            });
+
+            int[] right = new int[numClasses];
+            for (int c = 0; c < numClasses; c++) right[c] = segment.counts[c] - left[c];
+            return children(segment, new Segment(start, mid, left), new Segment(mid, end, right));
         }
 
-        double giniLeft = computeGini(left);
-        double giniRight = computeGini(right);
-        int total = left.size() + right.size();
-
-        return ((double) left.size() / total) * giniLeft +
-               ((double) right.size() / total) * giniRight;
+        // Rows going left first; right rows pass through buffer[position - base]
+        private void partition(int[] rows, int start, int end, int[] buffer, int base) {
+            int l = start;
+            int r = start;
+            for (int i = start; i < end; i++) {
+                int row = rows[i];
+                if (goesLeft[row]) rows[l++] = row;
+                else buffer[r++ - base] = row;
+            }
+            System.arraycopy(buffer, start - base, rows, l, r - start);
+        }
     }
 
-    private double computeGini(List<Map<String, Object>> subset) {
-        if (subset.isEmpty()) return 0.0;
+    // Split engine over quantized features. A node keeps one weighted class histogram per
+    // feature (bin x class), so split search costs the same however many distinct values a
+    // feature has. Only the smaller child's histogram is counted from its rows; the larger
+    // child's is the parent's minus the smaller one, computed in place.
+    private static final class HistogramSplitter implements Splitter {
+        private static final int BINS = BinnedDataset.MISSING_BIN + 1;
+
+        final BinnedDataset data;
+        final int[] labels;
+        final int[] weights;
+        final int numClasses;
+        final int stride;    // histogram ints per feature
+        final int[] rows;    // active rows; every node owns a [start, end) range
+        final int[] scratch;
+        final int[] tieRank;
+        final ForkJoinPool pool;
+
+        HistogramSplitter(BinnedDataset data, int[] weights, ForkJoinPool pool) {
+            this.data = data;
+            this.pool = pool;
+            this.labels = data.labels();
+            this.numClasses = Math.max(data.numClasses(), 1);
+            this.weights = weights != null ? weights : unitWeights(labels.length);
+            this.stride = BINS * numClasses;
+
+            int valid = 0;
+            for (int row = 0; row < labels.length; row++) {
+                if (labels[row] >= 0 && this.weights[row] > 0) valid++;
+            }
+            this.rows = new int[valid];
+            int k = 0;
+            for (int row = 0; row < labels.length; row++) {
+                if (labels[row] >= 0 && this.weights[row] > 0) rows[k++] = row;
+            }
+            this.scratch = new int[valid];
+            this.tieRank = tieRanks(data.getFeatureNames());
+        }
 
-        Map<Integer, Integer> freq = new HashMap<>();
-        int total = 0;
+        Segment root() {
+            int[] counts = new int[numClasses];
+            for (int row : rows) counts[labels[row]] += weights[row];
+            Segment root = new Segment(0, rows.length, counts);
+            root.histogram = histogram(root);
+            return root;
+        }
 
-        for (Map<String, Object> row : subset) {
-            Object val = row.get("Stress level");
+        // Features fill disjoint slices of the histogram, so large nodes count them concurrently
+        private int[] histogram(Segment segment) {
+            int[] hist = new int[data.numFeatures() * stride];
+            forEach(poolFor(pool, segment), data.numFeatures(), f -> {
+                byte[] col = data.bins(f);
+                int base = f * stride;
+                for (int i = segment.start; i < segment.end; i++) {
+                    int row = rows[i];
+                    hist[base + (col[row] & 0xFF) * numClasses + labels[row]] += weights[row];
+                }
+            });
+            return hist;
+        }
 
-            if (!(val instanceof Integer)) {
-                System.out.println("Warning: Invalid or missing 'Stress level': " + val);
-                continue;
-            }
+        @Override
+        public String featureName(int feature) {
+            return data.featureName(feature);
+        }
 
-            int label = (Integer) val;
-            freq.put(label, freq.getOrDefault(label, 0) + 1);
-            total++;
+        @Override
+        public int tieRank(int feature) {
+            return tieRank[feature];
         }
 
-        if (total == 0) {
-            throw new IllegalStateException("computeGini(): no valid 'Stress level' found.");
+        @Override
+        public int numFeatures() {
+            return data.numFeatures();
         }
 
-        double gini = 1.0;
-        for (int count : freq.values()) {
-            double prob = (double) count / total;
-            gini -= prob * prob;
+        // Candidates sit between consecutive non-empty value bins; missing values always go right.
+        // Ties keep the earlier threshold.
+        @Override
+        public void scan(Segment segment, int f, Split best) {
+            int[] hist = segment.histogram;
+            int n = segment.total;
+            int base = f * stride;
+            int[] leftCounts = new int[numClasses];
+            int nLeft = 0;
+            int last = -1; // last non-empty bin already counted on the left
+
+            for (int b = 0; b < data.numBins(f); b++) {
+                int offset = base + b * numClasses;
+                int inBin = 0;
+                for (int c = 0; c < numClasses; c++) inBin += hist[offset + c];
+                if (inBin == 0) continue;
+
+                if (last >= 0) {
+                    double score = giniScore(leftCounts, segment.counts, nLeft, n);
+                    if (score < best.score) {
+                        best.score = score;
+                        best.feature = f;
+                        best.threshold = midpoint(data.upperValue(f, last), data.lowerValue(f, b));
+                        best.leftBins = last + 1;
+                    }
+                }
+                for (int c = 0; c < numClasses; c++) leftCounts[c] += hist[offset + c];
+                nLeft += inBin;
+                last = b;
+            }
         }
 
-        return gini;
+        @Override
+        public Segment[] split(Segment segment) {
+            int start = segment.start;
+            int end = segment.end;
+            byte[] col = data.bins(segment.feature);
+            int leftBins = segment.leftBins;
+
+            // Stable partition: rows in bins [0, leftBins) first
+            int l = start;
+            int r = start;
+            for (int i = start; i < end; i++) {
+                int row = rows[i];
+                if ((col[row] & 0xFF) < leftBins) rows[l++] = row;
+                else scratch[r++] = row;
+            }
+            System.arraycopy(scratch, start, rows, l, r - start);
+            int mid = l;
+
+            int[] parent = segment.histogram;
+            segment.histogram = null;
+            int[] left = new int[numClasses];
+            int base = segment.feature * stride;
+            for (int b = 0; b < leftBins; b++) {
+                for (int c = 0; c < numClasses; c++) left[c] += parent[base + b * numClasses + c];
+            }
+            int[] right = new int[numClasses];
+            for (int c = 0; c < numClasses; c++) right[c] = segment.counts[c] - left[c];
+
+            Segment leftChild = new Segment(start, mid, left);
+            Segment rightChild = new Segment(mid, end, right);
+            Segment smaller = mid - start <= end - mid ? leftChild : rightChild;
+            Segment larger = smaller == leftChild ? rightChild : leftChild;
+
+            smaller.histogram = histogram(smaller);
+            for (int i = 0; i < parent.length; i++) parent[i] -= smaller.histogram[i];
+            larger.histogram = parent;
+            return children(segment, leftChild, rightChild);
+        }
     }
 
-    private static class SplitResult {
-        String feature;
-        double threshold;
-        List<Map<String, Object>> left;
-        List<Map<String, Object>> right;
-
-        SplitResult(String feature, double threshold, List<Map<String, Object>> left, List<Map<String, Object>> right) {
-            this.feature = feature;
-            this.threshold = threshold;
-            this.left = left;
-            this.right = right;
-        }
+    private static int[] unitWeights(int n) {
+        int[] weights = new int[n];
+        Arrays.fill(weights, 1);
+        return weights;
     }
 }
@@ -0,0 +1,164 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Grows a forest's trees on ForestWorker processes and merges them into the forest.
+// Every worker gets the job and the dataset once, then pulls batches of tree indices from a
+// shared queue until none are left, so faster workers take more batches. A worker that fails
+// (connection lost, timeout, error reply) has its batch put back for the others and gets no
+// more work. Tree i is grown from tree seed i wherever it runs, so the merged forest is the
+// one train(data) would build locally. Each worker gets its own copy of the dataset, so the
+// job costs workers x dataset bytes on the wire (see ForestWorker).
+public class ForestCoordinator {
+
+    private final List<InetSocketAddress> workers;
+    private int treesPerTask = 4;
+    private int timeoutMillis = 10 * 60 * 1000;
+    private final AtomicInteger reassigned = new AtomicInteger();
+
+    // Tree indices [first, first + count)
+    private static final class Task {
+        final int first;
+        final int count;
+
+        Task(int first, int count) {
+            this.first = first;
+            this.count = count;
+        }
+    }
+
+    public ForestCoordinator(List<InetSocketAddress> workers) {
+        if (workers.isEmpty()) throw new IllegalArgumentException("No workers given.");
+        this.workers = new ArrayList<>(workers);
+    }
+
+    // "host:port,host:port"
+    public static List<InetSocketAddress> parseWorkers(String spec) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) continue;
+            int colon = part.lastIndexOf(':');
+            if (colon <= 0) throw new IllegalArgumentException("Worker address must be host:port, got '" + part + "'.");
+            addresses.add(new InetSocketAddress(part.substring(0, colon), Integer.parseInt(part.substring(colon + 1))));
+        }
+        return addresses;
+    }
+
+    // Trees per request; smaller batches balance better and lose less work when a worker fails
+    public void setTreesPerTask(int treesPerTask) {
+        this.treesPerTask = Math.max(1, treesPerTask);
+    }
+
+    // How long to wait for a worker's reply before giving its batch to another worker
+    public void setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = Math.max(0, timeoutMillis);
+    }
+
+    // Batches handed to another worker during the last train()
+    public int getReassignedTasks() {
+        return reassigned.get();
+    }
+
+    // Adds the forest's numTrees trees grown on the workers. Out-of-bag tracking is not
+    // available: the bootstrap samples never leave the workers.
+    public void train(RandomForestModel forest, ColumnarDataset data) throws IOException {
+        boolean anyValid = false;
+        for (int i = 0; i < data.numRows() && !anyValid; i++) {
+            anyValid = data.label(i) >= 0;
+        }
+        if (!anyValid) {
+            throw new IllegalStateException("No valid rows with 'Stress level' found during bootstrapping.");
+        }
+
+        reassigned.set(0);
+        int numTrees = forest.getNumTrees();
+        String[] names = data.getFeatureNames();
+        BlockingQueue<Task> pending = new LinkedBlockingQueue<>();
+        for (int first = 0; first < numTrees; first += treesPerTask) {
+            pending.add(new Task(first, Math.min(treesPerTask, numTrees - first)));
+        }
+        DecisionTreeNode[] built = new DecisionTreeNode[numTrees];
+        AtomicInteger done = new AtomicInteger();
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+        List<Thread> threads = new ArrayList<>();
+        for (InetSocketAddress address : workers) {
+            Thread thread = new Thread(() -> {
+                try {
+                    drive(address, forest, data, names, pending, built, done, numTrees);
+                } catch (IOException e) {
+                    failures.add(address + ": " + e);
+                    System.err.println("Worker " + address + " failed: " + e);
+                }
+            }, "forest-coordinator-" + address);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        try {
+            for (Thread thread : threads) thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Distributed training interrupted.", e);
+        }
+
+        if (done.get() < numTrees) {
+            throw new IOException("Only " + done.get() + " of " + numTrees + " trees were grown; workers failed: " + failures);
+        }
+        forest.addTrees(built, names, data.numRows());
+        forest.setDataFingerprint(data.fingerprint());
+    }
+
+    // One worker's session: pulls batches until every tree is grown. On failure the batch in
+    // hand goes back on the queue before the exception ends this worker's part.
+    private void drive(InetSocketAddress address, RandomForestModel forest, ColumnarDataset data, String[] names,
+                       BlockingQueue<Task> pending, DecisionTreeNode[] built, AtomicInteger done,
+                       int numTrees) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(address, timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            ForestWorker.writeHello(out);
+            ForestWorker.writeJob(out, forest);
+            ForestWorker.writeDataset(out, data);
+
+            while (done.get() < numTrees) {
+                Task task;
+                try {
+                    task = pending.poll(50, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted.", e);
+                }
+                if (task == null) continue; // others still hold batches that may come back
+
+                try {
+                    out.writeInt(task.first);
+                    out.writeInt(task.count);
+                    out.flush();
+                    if (in.readByte() != ForestWorker.OK) throw new IOException(in.readUTF());
+                    long nanos = in.readLong();
+                    List<DecisionTreeNode> trees = ForestWorker.readTrees(in, names, task.count).toTrees();
+                    for (int i = 0; i < task.count; i++) {
+                        built[task.first + i] = trees.get(i);
+                        // The worker's own metrics live in its JVM; record the trees here too
+                        PipelineMetrics.get().recordTree(nanos / task.count, trees.get(i));
+                    }
+                    done.addAndGet(task.count);
+                } catch (IOException | RuntimeException e) {
+                    reassigned.incrementAndGet();
+                    pending.add(task);
+                    throw e instanceof IOException ? (IOException) e : new IOException(e.toString(), e);
+                }
+            }
+            out.writeInt(0);
+            out.writeInt(0);
+            out.flush();
+        }
+    }
+}
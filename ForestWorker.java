@@ -0,0 +1,262 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Grows trees for a ForestCoordinator in another JVM (java Main --worker [host:]port).
+// It listens on the loopback address unless given a host: anyone who can reach the port can
+// make it allocate and compute, so every count read off the wire is bounded before use and
+// reply trees are checked before they are merged.
+// Every worker receives the whole dataset (8 bytes per cell plus 4 per label) and keeps it on
+// its heap, so the coordinator sends workers x dataset bytes before the first tree is grown.
+// That pays off when growing the trees costs more than shipping the data, not as a way to
+// train on more data than one machine holds.
+// Protocol, one coordinator per connection, big-endian Data streams:
+//   coordinator -> worker  magic "SPDT", protocol version, then the job: tree count, maxDepth,
+//                          maxLeaves, mtry, seed, bootstrap mode, binned flag, then the
+//                          dataset: feature count, per feature UTF name + integral flag + row
+//                          count doubles, then labels
+//   coordinator -> worker  task: first tree index, tree count (count 0 ends the session), within
+//                          the job's tree count
+//   worker -> coordinator  status (OK / FAILED + message), nanoseconds spent growing the
+//                          batch, then the trees as snapshot arrays:
+//                          class count, tree count + roots, node count + feature / threshold /
+//                          left / right / leafClass
+// Tree i is grown from tree seed i exactly as the coordinator's own train() would grow it.
+public class ForestWorker implements Closeable {
+
+    static final int MAGIC = 0x53504454; // "SPDT"
+    static final int VERSION = 3; // 2 added the batch's growing time, 3 the forest's tree count
+    static final byte OK = 0;
+    static final byte FAILED = 1;
+
+    // Limits on counts read from the wire
+    static final int MAX_FEATURES = 1 << 16;
+    static final int MAX_NAME_BYTES = 1 << 16;
+    static final int MAX_TREES = 1 << 20;
+
+    private final ServerSocket server;
+    private final Thread acceptor;
+
+    // Listens on the loopback address only
+    public ForestWorker(int port) throws IOException {
+        this(InetAddress.getLoopbackAddress().getHostAddress(), port);
+    }
+
+    // Listens on host (e.g. "0.0.0.0" for every interface)
+    public ForestWorker(String host, int port) throws IOException {
+        this.server = new ServerSocket();
+        server.bind(new InetSocketAddress(host, port));
+        this.acceptor = new Thread(this::acceptLoop, "forest-worker-" + getPort());
+        acceptor.setDaemon(true);
+    }
+
+    public void start() {
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public String getHost() {
+        return server.getInetAddress().getHostAddress();
+    }
+
+    // Blocks until the worker is closed
+    public void join() throws InterruptedException {
+        acceptor.join();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread session = new Thread(() -> serve(socket), "forest-worker-session");
+                session.setDaemon(true);
+                session.start();
+            } catch (SocketException e) {
+                return; // closed
+            } catch (IOException e) {
+                System.err.println("Worker accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a forest coordinator.");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported protocol version " + version);
+
+            RandomForestModel forest = readJob(in);
+            ColumnarDataset data = readDataset(in);
+            BinnedDataset binned = forest.isBinnedTraining() ? BinnedDataset.of(data) : null;
+
+            while (true) {
+                int first = in.readInt();
+                int count = in.readInt();
+                if (count == 0) return;
+                // Only trees of this job's forest, so a request cannot ask for millions of trees
+                if (first < 0 || count < 0 || first > forest.getNumTrees() - count) {
+                    out.writeByte(FAILED);
+                    out.writeUTF("Bad batch of " + count + " trees from " + first + " for a forest of "
+                        + forest.getNumTrees() + ".");
+                    out.flush();
+                    return;
+                }
+                DecisionTreeNode[] trees;
+                long start = System.nanoTime();
+                try {
+                    trees = forest.growTrees(data, binned, first, count);
+                } catch (RuntimeException e) {
+                    out.writeByte(FAILED);
+                    out.writeUTF(String.valueOf(e.getMessage()));
+                    out.flush();
+                    return;
+                }
+                out.writeByte(OK);
+                out.writeLong(System.nanoTime() - start);
+                writeTrees(out, CompiledForest.compile(Arrays.asList(trees), data.getFeatureNames()));
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // coordinator went away
+        } catch (IOException e) {
+            System.err.println("Worker session failed: " + e.getMessage());
+        }
+    }
+
+    static void writeHello(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    static void writeJob(DataOutputStream out, RandomForestModel forest) throws IOException {
+        out.writeInt(forest.getNumTrees());
+        out.writeInt(forest.getMaxDepth());
+        out.writeInt(forest.getMaxLeaves());
+        out.writeInt(forest.getMtry());
+        out.writeLong(forest.getSeed());
+        out.writeInt(forest.getBootstrapMode().ordinal());
+        out.writeBoolean(forest.isBinnedTraining());
+    }
+
+    private static RandomForestModel readJob(DataInputStream in) throws IOException {
+        int numTrees = readCount(in, MAX_TREES, "tree");
+        int maxDepth = in.readInt();
+        int maxLeaves = in.readInt();
+        int mtry = in.readInt();
+        long seed = in.readLong();
+        int mode = in.readInt();
+        boolean binned = in.readBoolean();
+        if (mode < 0 || mode >= BootstrapSample.Mode.values().length) throw new IOException("Bad bootstrap mode " + mode);
+
+        RandomForestModel forest = new RandomForestModel(numTrees, maxDepth, maxLeaves, seed);
+        forest.setMtry(mtry);
+        forest.setBootstrapMode(BootstrapSample.Mode.values()[mode]);
+        forest.setBinnedTraining(binned);
+        forest.setProgressListener(null);
+        return forest;
+    }
+
+    static void writeDataset(DataOutputStream out, ColumnarDataset data) throws IOException {
+        out.writeInt(data.numFeatures());
+        out.writeInt(data.numRows());
+        for (int f = 0; f < data.numFeatures(); f++) {
+            writeString(out, data.featureName(f));
+            out.writeBoolean(data.isIntegral(f));
+            for (double v : data.column(f)) out.writeDouble(v);
+        }
+        for (int label : data.labels()) out.writeInt(label);
+    }
+
+    private static ColumnarDataset readDataset(DataInputStream in) throws IOException {
+        String[] names = new String[readCount(in, MAX_FEATURES, "feature")];
+        int rows = readCount(in, heapItems(8L * names.length + 4), "row");
+        double[][] columns = new double[names.length][rows];
+        boolean[] integral = new boolean[names.length];
+        for (int f = 0; f < names.length; f++) {
+            names[f] = readString(in);
+            integral[f] = in.readBoolean();
+            for (int row = 0; row < rows; row++) columns[f][row] = in.readDouble();
+        }
+        int[] labels = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            labels[row] = in.readInt();
+            if (labels[row] < -1 || labels[row] >= CompiledForest.MAX_CLASSES) throw new IOException("Bad label " + labels[row]);
+        }
+        return new ColumnarDataset(names, columns, integral, labels);
+    }
+
+    static void writeTrees(DataOutputStream out, CompiledForest trees) throws IOException {
+        out.writeInt(trees.numClasses());
+        out.writeInt(trees.roots().length);
+        for (int v : trees.roots()) out.writeInt(v);
+        out.writeInt(trees.features().length);
+        for (int v : trees.features()) out.writeInt(v);
+        for (double v : trees.thresholds()) out.writeDouble(v);
+        for (int v : trees.lefts()) out.writeInt(v);
+        for (int v : trees.rights()) out.writeInt(v);
+        for (int v : trees.leafClasses()) out.writeInt(v);
+    }
+
+    // Reads expectedTrees trees and checks every index before the arrays become a forest
+    static CompiledForest readTrees(DataInputStream in, String[] featureNames, int expectedTrees) throws IOException {
+        int numClasses = readCount(in, CompiledForest.MAX_CLASSES, "class");
+        int treeCount = in.readInt();
+        if (treeCount != expectedTrees) throw new IOException("Expected " + expectedTrees + " trees, got " + treeCount + ".");
+        int[] roots = readInts(in, treeCount);
+        int nodes = readCount(in, heapItems(4 + 8 + 4 + 4 + 4), "node");
+        int[] feature = readInts(in, nodes);
+        double[] threshold = new double[nodes];
+        for (int n = 0; n < nodes; n++) threshold[n] = in.readDouble();
+        int[] left = readInts(in, nodes);
+        int[] right = readInts(in, nodes);
+        int[] leafClass = readInts(in, nodes);
+        CompiledForest.checkNodes(featureNames.length, numClasses, roots, feature, left, right, leafClass);
+        return new CompiledForest(featureNames, numClasses, roots, feature, threshold, left, right, leafClass);
+    }
+
+    // A count from the wire, rejected when negative or above max before anything is allocated
+    private static int readCount(DataInputStream in, long max, String what) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > max) throw new IOException("Bad " + what + " count " + count + " (limit " + max + ").");
+        return count;
+    }
+
+    // How many items of itemBytes each fit in half the heap, capped at the largest array length
+    private static long heapItems(long itemBytes) {
+        return Math.min(Integer.MAX_VALUE - 8, Runtime.getRuntime().maxMemory() / 2 / Math.max(1, itemBytes));
+    }
+
+    private static int[] readInts(DataInputStream in, int count) throws IOException {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) values[i] = in.readInt();
+        return values;
+    }
+
+    // Length-prefixed UTF-8 (writeUTF caps strings at 64 KB)
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readCount(in, MAX_NAME_BYTES, "name byte")];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -3,5 +3,8 @@ import java.util.Map;
 
 public interface GraphGenerator {
     void generateRadarChart(Map<String, Object> userInput, List<Map<String, Object>> dataset);
+    void generateRadarChart(Map<String, Object> userInput, ColumnarDataset dataset);
+    void generateRadarChart(Map<String, Object> userInput, DatasetStatistics stats);
+    void exportRadarData(List<Map<String, Object>> users, DatasetStatistics stats, String outputFile);
     void displayGraph();
 }
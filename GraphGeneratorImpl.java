@@ -1,50 +1,79 @@
-import java.io.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
 
 public class GraphGeneratorImpl implements GraphGenerator {
 
     private String csvFile = "radar_data.csv";
+    private final Map<ColumnarDataset, DatasetStatistics> statistics = new WeakHashMap<>();
 
     @Override
     public void generateRadarChart(Map<String, Object> userInput, List<Map<String, Object>> dataset) {
-        // Compute average values for each input feature
-        Map<String, Double> featureSums = new HashMap<>();
-        int count = dataset.size();
-
-        for (Map<String, Object> row : dataset) {
-            for (String key : userInput.keySet()) {
-                if (key.equals("Stress level")) continue;
-                Object val = row.get(key);
-                if (val instanceof Number) {
-                    featureSums.put(key, featureSums.getOrDefault(key, 0.0) + ((Number) val).doubleValue());
-                }
-            }
-        }
+        generateRadarChart(userInput, DatasetStatistics.of(ColumnarDataset.fromRows(dataset)));
+    }
 
-        Map<String, Double> featureAverages = new HashMap<>();
-        for (String key : featureSums.keySet()) {
-            featureAverages.put(key, featureSums.get(key) / count);
+    // Statistics are computed once per dataset and reused by later charts
+    @Override
+    public void generateRadarChart(Map<String, Object> userInput, ColumnarDataset dataset) {
+        DatasetStatistics stats;
+        synchronized (statistics) {
+            stats = statistics.computeIfAbsent(dataset, DatasetStatistics::of);
         }
+        generateRadarChart(userInput, stats);
+    }
 
-        // Write radar_data.csv
-        try (PrintWriter writer = new PrintWriter(new FileWriter(csvFile))) {
-            writer.println("Attribute,UserValue,AverageValue");
+    @Override
+    public void generateRadarChart(Map<String, Object> userInput, DatasetStatistics stats) {
+        StringBuilder csv = new StringBuilder("Attribute,UserValue,AverageValue\n");
+        appendRadarRows(csv, null, userInput, stats);
 
-            for (String key : userInput.keySet()) {
-                if (key.equals("Stress level")) continue;
+        try {
+            Files.writeString(Paths.get(csvFile), csv);
+            System.out.println("✅ Radar data written to " + csvFile);
+        } catch (IOException e) {
+            System.err.println("❌ Failed to write radar data CSV: " + e.getMessage());
+        }
+    }
 
-                Object userVal = userInput.get(key);
-                double avgVal = featureAverages.getOrDefault(key, 0.0);
-                writer.printf("%s,%.2f,%.2f\n", key,
-                        ((Number) userVal).doubleValue(), avgVal);
+    // Radar rows for a whole cohort in one file, one block of rows per user (numbered from 1)
+    @Override
+    public void exportRadarData(List<Map<String, Object>> users, DatasetStatistics stats, String outputFile) {
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(outputFile))) {
+            writer.write("User,Attribute,UserValue,AverageValue\n");
+            StringBuilder block = new StringBuilder();
+            for (int i = 0; i < users.size(); i++) {
+                block.setLength(0);
+                appendRadarRows(block, String.valueOf(i + 1), users.get(i), stats);
+                writer.append(block);
             }
-
-            System.out.println("✅ Radar data written to " + csvFile);
+            System.out.println("✅ Radar data for " + users.size() + " users written to " + outputFile);
         } catch (IOException e) {
             System.err.println("❌ Failed to write radar data CSV: " + e.getMessage());
         }
     }
 
+    private static void appendRadarRows(StringBuilder out, String user, Map<String, Object> userInput,
+                                        DatasetStatistics stats) {
+        for (Map.Entry<String, Object> entry : userInput.entrySet()) {
+            String key = entry.getKey();
+            if (key.equals("Stress level") || !(entry.getValue() instanceof Number)) continue;
+
+            DatasetStatistics.FeatureStats feature = stats.overall(key);
+            double avgVal = feature == null || feature.count() == 0 ? 0.0 : feature.mean();
+            if (user != null) out.append(user).append(',');
+            out.append(key).append(',')
+               .append(format(((Number) entry.getValue()).doubleValue())).append(',')
+               .append(format(avgVal)).append('\n');
+        }
+    }
+
+    // Two decimals, as the radar script expects
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
     @Override
     public void displayGraph() {
         try {
@@ -0,0 +1,160 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+// k-fold cross-validation over a grid of forest parameters. Folds are held-out row masks over
+// one shared dataset: nothing is shuffled into copies, and every (grid point, fold) task trains
+// on the same cached per-feature sort orders. Tasks run in parallel on the executor.
+public class GridSearch {
+
+    public static final class Params {
+        public final int numTrees;
+        public final int maxDepth;
+        public final int maxLeaves;
+
+        public Params(int numTrees, int maxDepth, int maxLeaves) {
+            this.numTrees = numTrees;
+            this.maxDepth = maxDepth;
+            this.maxLeaves = maxLeaves;
+        }
+
+        @Override
+        public String toString() {
+            return "numTrees=" + numTrees + ", maxDepth=" + maxDepth + ", maxLeaves=" + maxLeaves;
+        }
+    }
+
+    public static final class Result {
+        public final Params params;
+        public final double[] foldAccuracy;
+        public final double meanAccuracy;
+        public final double stdAccuracy;
+        public final double trainMillis; // mean per fold
+
+        Result(Params params, double[] foldAccuracy, double trainMillis) {
+            this.params = params;
+            this.foldAccuracy = foldAccuracy;
+            this.trainMillis = trainMillis;
+            double sum = 0;
+            for (double a : foldAccuracy) sum += a;
+            this.meanAccuracy = sum / foldAccuracy.length;
+            double sq = 0;
+            for (double a : foldAccuracy) sq += (a - meanAccuracy) * (a - meanAccuracy);
+            this.stdAccuracy = foldAccuracy.length < 2 ? 0.0 : Math.sqrt(sq / (foldAccuracy.length - 1));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s -> accuracy %.4f ± %.4f (%.0f ms/fold)", params, meanAccuracy, stdAccuracy, trainMillis);
+        }
+    }
+
+    private final int folds;
+    private final long seed;
+    private ExecutorService executor = ForkJoinPool.commonPool();
+    private Consumer<RandomForestModel> configure = forest -> { };
+
+    public GridSearch(int folds, long seed) {
+        if (folds < 2) throw new IllegalArgumentException("Cross-validation needs at least 2 folds.");
+        this.folds = folds;
+        this.seed = seed;
+    }
+
+    // Every combination of the given values
+    public static List<Params> grid(int[] numTrees, int[] maxDepths, int[] maxLeaves) {
+        List<Params> grid = new ArrayList<>();
+        for (int trees : numTrees) {
+            for (int depth : maxDepths) {
+                for (int leaves : maxLeaves) {
+                    grid.add(new Params(trees, depth, leaves));
+                }
+            }
+        }
+        return grid;
+    }
+
+    // null runs every task on the calling thread
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    // Applied to every forest before training, for options outside Params (e.g. binned training)
+    public void setConfigure(Consumer<RandomForestModel> configure) {
+        this.configure = configure;
+    }
+
+    // One result per grid point, best mean accuracy first
+    public List<Result> run(ColumnarDataset data, List<Params> grid) {
+        BitSet[] holdouts = assignFolds(data);
+        for (int f = 0; f < data.numFeatures(); f++) data.sortedIndex(f); // presort once, before tasks share it
+
+        double[][] accuracy = new double[grid.size()][folds];
+        long[][] nanos = new long[grid.size()][folds];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int g = 0; g < grid.size(); g++) {
+            for (int k = 0; k < folds; k++) {
+                final int point = g;
+                final int fold = k;
+                tasks.add(() -> {
+                    Params params = grid.get(point);
+                    RandomForestModel forest = new RandomForestModel(params.numTrees, params.maxDepth, params.maxLeaves, seed);
+                    forest.setProgressListener(null);
+                    forest.setOutOfBagTracking(false);
+                    configure.accept(forest);
+                    forest.setExecutor(null); // parallelism comes from running tasks side by side
+
+                    long start = System.nanoTime();
+                    forest.train(data, holdouts[fold]);
+                    nanos[point][fold] = System.nanoTime() - start;
+                    accuracy[point][fold] = accuracy(forest, data, holdouts[fold]);
+                    return null;
+                });
+            }
+        }
+        RandomForestModel.runAll(executor, tasks, "Grid search", IllegalStateException::new);
+
+        List<Result> results = new ArrayList<>();
+        for (int g = 0; g < grid.size(); g++) {
+            long total = 0;
+            for (long n : nanos[g]) total += n;
+            results.add(new Result(grid.get(g), accuracy[g], total / 1e6 / folds));
+        }
+        results.sort(Comparator.comparingDouble((Result r) -> -r.meanAccuracy)
+            .thenComparingInt(r -> r.params.numTrees));
+        return results;
+    }
+
+    // Labelled rows shuffled once (seeded) and dealt round-robin into folds
+    private BitSet[] assignFolds(ColumnarDataset data) {
+        int[] rows = new int[data.numRows()];
+        int n = 0;
+        for (int row = 0; row < data.numRows(); row++) {
+            if (data.label(row) >= 0) rows[n++] = row;
+        }
+        Random rand = new Random(seed);
+        for (int i = n - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int tmp = rows[i];
+            rows[i] = rows[j];
+            rows[j] = tmp;
+        }
+        if (n < folds) throw new IllegalArgumentException("Only " + n + " labelled rows for " + folds + " folds.");
+
+        BitSet[] holdouts = new BitSet[folds];
+        for (int k = 0; k < folds; k++) holdouts[k] = new BitSet(data.numRows());
+        for (int i = 0; i < n; i++) holdouts[i % folds].set(rows[i]);
+        return holdouts;
+    }
+
+    private static double accuracy(RandomForestModel forest, ColumnarDataset data, BitSet holdout) {
+        double[] x = new double[data.numFeatures()];
+        int correct = 0;
+        int total = 0;
+        for (int row = holdout.nextSetBit(0); row >= 0; row = holdout.nextSetBit(row + 1)) {
+            data.row(row, x);
+            if (forest.predict(x) == data.label(row)) correct++;
+            total++;
+        }
+        return total == 0 ? Double.NaN : correct / (double) total;
+    }
+}
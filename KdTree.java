@@ -0,0 +1,203 @@
+import java.util.Arrays;
+
+// Static k-d tree over fixed-length points for exact k-nearest-neighbour queries.
+// Queries take per-dimension weights, so a dimension can be left out with weight 0.
+public class KdTree {
+
+    private static final int LEAF_SIZE = 8;
+
+    private final int dims;
+    private final double[] points;   // row-major, reordered during the build
+    private final int[] ids;
+
+    // Node arrays; a leaf has splitDim == -1 and owns points [lo, hi)
+    private int[] splitDim;
+    private double[] splitValue;
+    private int[] lo;
+    private int[] hi;
+    private int[] left;
+    private int[] right;
+    private int numNodes;
+
+    public KdTree(double[] points, int[] ids, int dims) {
+        this.dims = dims;
+        this.points = points;
+        this.ids = ids;
+
+        int capacity = Math.max(1, 2 * (ids.length / LEAF_SIZE + 1));
+        splitDim = new int[capacity];
+        splitValue = new double[capacity];
+        lo = new int[capacity];
+        hi = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        build(0, ids.length);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    private int build(int from, int to) {
+        int node = newNode(from, to);
+        if (to - from <= LEAF_SIZE) return node;
+
+        // Split on the dimension with the widest spread at its median
+        int dim = 0;
+        double widest = -1;
+        for (int d = 0; d < dims; d++) {
+            double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                double v = points[i * dims + d];
+                if (v < min) min = v;
+                if (v > max) max = v;
+            }
+            if (max - min > widest) {
+                widest = max - min;
+                dim = d;
+            }
+        }
+        if (widest <= 0) return node; // all points identical
+
+        int mid = (from + to) >>> 1;
+        select(from, to - 1, mid, dim);
+
+        splitDim[node] = dim;
+        splitValue[node] = points[mid * dims + dim];
+        int l = build(from, mid);
+        int r = build(mid, to);
+        left[node] = l;
+        right[node] = r;
+        return node;
+    }
+
+    private int newNode(int from, int to) {
+        if (numNodes == splitDim.length) {
+            int cap = numNodes * 2;
+            splitDim = Arrays.copyOf(splitDim, cap);
+            splitValue = Arrays.copyOf(splitValue, cap);
+            lo = Arrays.copyOf(lo, cap);
+            hi = Arrays.copyOf(hi, cap);
+            left = Arrays.copyOf(left, cap);
+            right = Arrays.copyOf(right, cap);
+        }
+        int node = numNodes++;
+        splitDim[node] = -1;
+        lo[node] = from;
+        hi[node] = to;
+        return node;
+    }
+
+    // Quickselect: afterwards point k holds the median value and [from, k) <= it <= (k, to]
+    private void select(int from, int to, int k, int dim) {
+        while (to > from) {
+            double pivot = points[((from + to) >>> 1) * dims + dim];
+            int i = from, j = to;
+            while (i <= j) {
+                while (points[i * dims + dim] < pivot) i++;
+                while (points[j * dims + dim] > pivot) j--;
+                if (i <= j) swap(i++, j--);
+            }
+            if (k <= j) to = j;
+            else if (k >= i) from = i;
+            else return;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        for (int d = 0; d < dims; d++) {
+            double v = points[a * dims + d];
+            points[a * dims + d] = points[b * dims + d];
+            points[b * dims + d] = v;
+        }
+    }
+
+    // Adds this tree's nearest points to the shared result set
+    public void search(double[] query, double[] weights, Neighbors result) {
+        if (ids.length > 0) search(0, query, weights, result);
+    }
+
+    private void search(int node, double[] query, double[] weights, Neighbors result) {
+        int dim = splitDim[node];
+        if (dim < 0) {
+            for (int i = lo[node]; i < hi[node]; i++) {
+                double sum = 0;
+                int base = i * dims;
+                for (int d = 0; d < dims; d++) {
+                    double diff = query[d] - points[base + d];
+                    sum += weights[d] * diff * diff;
+                }
+                result.offer(ids[i], sum);
+            }
+            return;
+        }
+
+        double diff = query[dim] - splitValue[node];
+        int near = diff <= 0 ? left[node] : right[node];
+        int far = diff <= 0 ? right[node] : left[node];
+        search(near, query, weights, result);
+        if (weights[dim] * diff * diff <= result.worst()) {
+            search(far, query, weights, result);
+        }
+    }
+
+    // Bounded max-heap of the k best (smallest squared distance) ids seen so far
+    public static class Neighbors {
+        private final int[] ids;
+        private final double[] dist;
+        private int size;
+
+        public Neighbors(int k) {
+            ids = new int[k];
+            dist = new double[k];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public double worst() {
+            return size < ids.length ? Double.POSITIVE_INFINITY : dist[0];
+        }
+
+        public void offer(int id, double d) {
+            if (ids.length == 0) return;
+            if (size < ids.length) {
+                int i = size++;
+                while (i > 0 && dist[(i - 1) / 2] < d) {
+                    ids[i] = ids[(i - 1) / 2];
+                    dist[i] = dist[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                ids[i] = id;
+                dist[i] = d;
+            } else if (d < dist[0]) {
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && dist[child + 1] > dist[child]) child++;
+                    if (dist[child] <= d) break;
+                    ids[i] = ids[child];
+                    dist[i] = dist[child];
+                    i = child;
+                }
+                ids[i] = id;
+                dist[i] = d;
+            }
+        }
+
+        // Ids ordered from nearest to farthest
+        public int[] sortedIds() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Double.compare(dist[a], dist[b]));
+            int[] out = new int[size];
+            for (int i = 0; i < size; i++) out[i] = ids[order[i]];
+            return out;
+        }
+    }
+}
@@ -1,22 +1,94 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 
 public class Main {
+
+    private static final String MODEL_FILE = "stress_model.bin";
+
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
 
+        // Pipeline metrics over JMX (StressPrediction:type=PipelineMetrics);
+        // -Dmetrics.logSeconds=N also prints them every N seconds
+        PipelineMetrics.get().register();
+        int metricsLogSeconds = Integer.getInteger("metrics.logSeconds", 0);
+        if (metricsLogSeconds > 0) PipelineMetrics.get().startLogging(metricsLogSeconds, System.out);
+
+        // Worker mode: java Main --worker [host:]port; grows trees for a coordinator started with
+        // -Dtrain.workers=host:port,... and needs no dataset of its own. Without a host it only
+        // listens on the loopback address.
+        if (args.length > 0 && args[0].equals("--worker")) {
+            String address = args.length > 1 ? args[1] : "9090";
+            int colon = address.lastIndexOf(':');
+            int port = Integer.parseInt(address.substring(colon + 1));
+            try (ForestWorker worker = colon < 0 ? new ForestWorker(port) : new ForestWorker(address.substring(0, colon), port)) {
+                worker.start();
+                System.out.println("🌲 Forest worker listening on " + worker.getHost() + ":" + worker.getPort());
+                worker.join();
+            } catch (IOException e) {
+                System.err.println("Could not start worker: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
         // Load and process dataset once
         DataProcessorImpl dp = new DataProcessorImpl();
-        StressPredictorImpl sp = new StressPredictorImpl();
-        RecommendationEngineImpl re = new RecommendationEngineImpl();
+        // Interactive inputs repeat a lot; cache up to 1024 answers for 10 minutes
+        StressPredictorImpl sp = new StressPredictorImpl(1024, 600_000);
+        RecommendationEngineImpl re = new RecommendationEngineImpl(1024, 600_000);
         GraphGeneratorImpl graphGen = new GraphGeneratorImpl();
 
-        List<Map<String, Object>> data = dp.loadDataset("trimmed_anxiety_dataset.csv");
-        List<Map<String, Object>> filtered = dp.filterData(data);
-        Map<String, List<Map<String, Object>>> split = dp.splitTrainTest(filtered, 0.8);
-        List<Map<String, Object>> train = split.get("train");
+        ColumnarDataset data = dp.loadColumnarDataset("trimmed_anxiety_dataset.csv");
+        ColumnarDataset filtered = dp.filterData(data);
+
+        // Tuning mode: java Main --tune [folds]
+        if (args.length > 0 && args[0].equals("--tune")) {
+            int folds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+            List<GridSearch.Params> grid = GridSearch.grid(new int[] {10, 25, 50}, new int[] {5, 10, 15}, new int[] {30, 100});
+            System.out.println("🔧 " + folds + "-fold cross-validation over " + grid.size() + " parameter sets...");
+            for (GridSearch.Result result : new GridSearch(folds, 42L).run(filtered, grid)) {
+                System.out.println(result);
+            }
+            return;
+        }
+
+        RandomForestModel forest = loadOrTrainModel(sp, filtered);
+        PipelineMetrics.get().recordModel(forest);
+
+        // Server mode: java Main --serve [port] [batchWindowMicros]
+        if (args.length > 0 && args[0].equals("--serve")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            long windowMicros = args.length > 2 ? Long.parseLong(args[2]) : 500;
+            try {
+                PredictionServer server = new PredictionServer(forest, re, filtered, port, windowMicros, 256);
+                server.start();
+                System.out.println("🌐 Serving /predict, /predict/batch and /recommend on http://127.0.0.1:" + server.getPort());
+            } catch (IOException e) {
+                System.err.println("Could not start server: " + e.getMessage());
+            }
+            return;
+        }
 
-        RandomForestModel forest = sp.createRandomForest(train, 10, 10, 30);
-        System.out.println("📊 Model trained on dataset. Ready to predict!\n");
+        // Bulk mode: java Main --score in.csv --out out.csv
+        if (args.length > 0 && args[0].equals("--score")) {
+            if (args.length < 4 || !args[2].equals("--out")) {
+                System.err.println("Usage: java Main --score <input.csv> --out <output.csv>");
+                return;
+            }
+            try {
+                long start = System.nanoTime();
+                long rows = new BulkScorer(forest).score(Paths.get(args[1]), Paths.get(args[3]));
+                System.out.printf("✅ Scored %d rows into %s in %.1f s%n", rows, args[3], (System.nanoTime() - start) / 1e9);
+            } catch (IOException e) {
+                System.err.println("Could not score " + args[1] + ": " + e.getMessage());
+            }
+            return;
+        }
 
         boolean continuePrediction = true;
         while (continuePrediction) {
@@ -71,4 +143,49 @@ public class Main {
 System.out.println("To generate a radar chart. Type python3 radar_chart.py");
         System.out.println("✅ Session ended. Thank you!");
     }
+
+    // Reuse the saved model when there is one; otherwise train and save it
+    private static RandomForestModel loadOrTrainModel(StressPredictorImpl sp, ColumnarDataset filtered) {
+        Path modelPath = Paths.get(MODEL_FILE);
+        if (Files.exists(modelPath)) {
+            try {
+                RandomForestModel forest = RandomForestModel.load(modelPath);
+                // A changed CSV (rows, schema or labels) must not be served by a stale model
+                if (forest.getDataFingerprint() == filtered.fingerprint()) {
+                    System.out.println("📦 Loaded saved model from " + MODEL_FILE + ". Ready to predict!\n");
+                    return forest;
+                }
+                System.out.println("📦 " + MODEL_FILE + " was trained on different data, retraining.");
+            } catch (IOException e) {
+                System.err.println("Could not load " + MODEL_FILE + ", retraining: " + e.getMessage());
+            }
+        }
+
+        // -Dtrain.workers=host:port,... grows the trees on worker processes (java Main --worker)
+        RandomForestModel forest = null;
+        String workers = System.getProperty("train.workers");
+        if (workers != null && !workers.isBlank()) {
+            try {
+                forest = new RandomForestModel(10, 10, 30);
+                new ForestCoordinator(ForestCoordinator.parseWorkers(workers)).train(forest, filtered);
+                System.out.println("📊 Model trained on workers " + workers + ". Ready to predict!\n");
+            } catch (IOException e) {
+                System.err.println("Distributed training failed, training locally: " + e.getMessage());
+                forest = null;
+            }
+        }
+
+        if (forest == null) {
+            // Every row trains the forest; out-of-bag votes stand in for a held-out test split
+            forest = sp.createRandomForest(filtered, 10, 10, 30);
+            System.out.printf("📊 Model trained on dataset (out-of-bag accuracy %.1f%%). Ready to predict!%n%n",
+                forest.getOutOfBagAccuracy() * 100);
+        }
+        try {
+            forest.save(modelPath);
+        } catch (IOException e) {
+            System.err.println("Could not save model: " + e.getMessage());
+        }
+        return forest;
+    }
 }
@@ -0,0 +1,331 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Reads a numeric CSV straight from a memory-mapped file into primitive columns.
+// Cells are parsed from the raw bytes; no per-line or per-cell Strings are created.
+public class MappedCsvLoader {
+
+    private static final long MAX_CHUNK = 1L << 30;        // one mapping must stay below 2 GB
+    private static final long MIN_PARALLEL_CHUNK = 8L << 20;
+
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final int parallelism;
+
+    public MappedCsvLoader() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public MappedCsvLoader(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public ColumnarDataset load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long headerEnd = nextLineStart(channel, 0, size);
+            if (headerEnd == 0) {
+                return new ColumnarDataset.Builder(new String[0], 0).build();
+            }
+
+            Header header = readHeader(channel, headerEnd);
+            long[] bounds = chunkBounds(channel, headerEnd, size);
+
+            List<Callable<ColumnarDataset>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                tasks.add(() -> parseChunk(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), header));
+            }
+
+            List<ColumnarDataset> parts = new ArrayList<>();
+            if (tasks.size() == 1) {
+                parts.add(tasks.get(0).call());
+            } else {
+                for (Future<ColumnarDataset> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                    parts.add(future.get());
+                }
+            }
+            return ColumnarDataset.concat(parts);
+
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException("Failed to parse " + path, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading " + path, e);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to parse " + path, e);
+        }
+    }
+
+    // Receives chunks from forEachChunk
+    public interface ChunkSink {
+        void accept(ColumnarDataset chunk) throws IOException;
+    }
+
+    // Parses the file one line-aligned chunk of about chunkBytes at a time, in file order, and
+    // hands each chunk to sink before reading the next. Memory stays bounded by one chunk,
+    // whatever the file size. A file with no data rows yields one empty chunk.
+    public void forEachChunk(Path path, long chunkBytes, ChunkSink sink) throws IOException {
+        long step = Math.max(1, Math.min(chunkBytes, MAX_CHUNK));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long headerEnd = nextLineStart(channel, 0, size);
+            Header header = headerEnd == 0 ? new Header(new String[0], new int[0], -1) : readHeader(channel, headerEnd);
+
+            long start = headerEnd;
+            do {
+                long end = nextLineStart(channel, Math.min(size, start + step - 1), size);
+                sink.accept(parseChunk(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), header));
+                start = end;
+            } while (start < size);
+        }
+    }
+
+    // Data rows forEachChunk / load would produce, counted without parsing any cell
+    public long countRows(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long pos = nextLineStart(channel, 0, size);
+            long rows = 0;
+            boolean lineStart = true;
+            while (pos < size) {
+                ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAX_CHUNK, size - pos));
+                for (int i = 0; i < buf.limit(); i++) {
+                    byte b = buf.get(i);
+                    if (lineStart && b != '\n' && b != '\r') rows++; // blank lines are skipped
+                    lineStart = b == '\n' || (lineStart && b == '\r');
+                }
+                pos += buf.limit();
+            }
+            return rows;
+        }
+    }
+
+    // Column layout resolved from the header line
+    static final class Header {
+        final String[] featureNames;
+        final int[] featureOf;   // CSV column -> feature index, -1 for the label column
+        final int labelColumn;
+
+        Header(String[] featureNames, int[] featureOf, int labelColumn) {
+            this.featureNames = featureNames;
+            this.featureOf = featureOf;
+            this.labelColumn = labelColumn;
+        }
+
+        static Header parse(String line) {
+            String[] headers = line.split(",");
+            int labelCol = -1;
+            List<String> names = new ArrayList<>();
+            int[] featureOf = new int[headers.length];
+            for (int i = 0; i < headers.length; i++) {
+                String key = headers[i].trim();
+                if (key.equals(ColumnarDataset.LABEL_COLUMN)) {
+                    labelCol = i;
+                    featureOf[i] = -1;
+                } else {
+                    featureOf[i] = names.size();
+                    names.add(key);
+                }
+            }
+            return new Header(names.toArray(new String[0]), featureOf, labelCol);
+        }
+    }
+
+    private static Header readHeader(FileChannel channel, long headerEnd) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) headerEnd);
+        while (buf.hasRemaining() && channel.read(buf, buf.position()) > 0) { }
+        String line = new String(buf.array(), 0, buf.position(), StandardCharsets.UTF_8);
+        if (line.startsWith("\uFEFF")) line = line.substring(1);
+        return Header.parse(line.strip());
+    }
+
+    // Offset just past the next '\n' at or after pos (or size when there is none)
+    private static long nextLineStart(FileChannel channel, long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        while (pos < size) {
+            buf.clear();
+            int read = channel.read(buf, pos);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (buf.get(i) == '\n') return pos + i + 1;
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    // Splits [start, size) into line-aligned chunks, one per core for large files
+    private long[] chunkBounds(FileChannel channel, long start, long size) throws IOException {
+        long body = size - start;
+        int chunks = (int) Math.max(1, Math.min(parallelism, body / MIN_PARALLEL_CHUNK));
+        chunks = (int) Math.max(chunks, (body + MAX_CHUNK - 1) / MAX_CHUNK);
+
+        long[] bounds = new long[chunks + 1];
+        bounds[0] = start;
+        for (int i = 1; i < chunks; i++) {
+            long target = Math.max(bounds[i - 1], start + body / chunks * i);
+            bounds[i] = nextLineStart(channel, target, size);
+        }
+        bounds[chunks] = size;
+        return bounds;
+    }
+
+    // Line splitting shared by parseChunk and BulkScorer, so both see the same rows: a line ends
+    // at '\n', and a line holding nothing but '\r' bytes is blank and skipped (countRows counts
+    // the same way). Returns where the next data line starts at or after pos, or limit.
+    static int skipBlankLines(ByteBuffer buf, int pos, int limit) {
+        while (pos < limit && (buf.get(pos) == '\n' || buf.get(pos) == '\r')) pos++;
+        return pos;
+    }
+
+    // Index of the '\n' ending the line that starts at pos, or limit when the line is unterminated
+    static int lineEnd(ByteBuffer buf, int pos, int limit) {
+        while (pos < limit && buf.get(pos) != '\n') pos++;
+        return pos;
+    }
+
+    static ColumnarDataset parseChunk(ByteBuffer buf, Header header) {
+        ColumnarDataset.Builder builder = new ColumnarDataset.Builder(header.featureNames, 1024);
+        int limit = buf.limit();
+        int pos = buf.position();
+        int columns = header.featureOf.length;
+        double[] parsed = new double[1];
+
+        while ((pos = skipBlankLines(buf, pos, limit)) < limit) {
+            int row = builder.addRow();
+            int col = 0;
+            int end = lineEnd(buf, pos, limit);
+            while (true) {
+                int cellEnd = pos;
+                while (cellEnd < end && buf.get(cellEnd) != ',') cellEnd++;
+
+                if (col < columns) {
+                    int kind = parseCell(buf, pos, cellEnd, parsed);
+                    if (kind != CELL_OTHER) {
+                        int feature = header.featureOf[col];
+                        if (col == header.labelColumn) {
+                            if (kind == CELL_INTEGER) builder.setLabel(row, (int) parsed[0]);
+                        } else {
+                            builder.set(row, feature, parsed[0], kind != CELL_DECIMAL);
+                        }
+                    }
+                }
+                col++;
+
+                pos = cellEnd + 1;
+                if (cellEnd == end) break;
+            }
+        }
+        return builder.build();
+    }
+
+    static final int CELL_OTHER = 0;    // empty or non-numeric text: left as NaN
+    static final int CELL_INTEGER = 1;
+    static final int CELL_DECIMAL = 2;
+    static final int CELL_BOOLEAN = 3;  // yes/no mapped to 1/0
+
+    // Parses the cell in [start, end) into out[0] and reports what kind of value it held
+    static int parseCell(ByteBuffer buf, int start, int end, double[] out) {
+        while (start < end && isSpace(buf.get(start))) start++;
+        while (end > start && isSpace(buf.get(end - 1))) end--;
+        if (start == end) return CELL_OTHER;
+
+        int len = end - start;
+        if (len == 3 && lower(buf.get(start)) == 'y' && lower(buf.get(start + 1)) == 'e' && lower(buf.get(start + 2)) == 's') {
+            out[0] = 1;
+            return CELL_BOOLEAN;
+        }
+        if (len == 2 && lower(buf.get(start)) == 'n' && lower(buf.get(start + 1)) == 'o') {
+            out[0] = 0;
+            return CELL_BOOLEAN;
+        }
+
+        int i = start;
+        boolean negative = false;
+        if (buf.get(i) == '-' || buf.get(i) == '+') {
+            negative = buf.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean decimal = false;
+        boolean any = false;
+
+        for (; i < end; i++) {
+            byte c = buf.get(i);
+            if (c >= '0' && c <= '9') {
+                any = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) digits++;
+                    if (decimal) scale--;
+                } else if (!decimal) {
+                    scale++; // digits beyond long precision
+                }
+            } else if (c == '.' && !decimal) {
+                decimal = true;
+            } else {
+                break;
+            }
+        }
+        if (!any) return CELL_OTHER;
+
+        if (i < end && (buf.get(i) == 'e' || buf.get(i) == 'E')) {
+            decimal = true;
+            i++;
+            boolean expNegative = false;
+            if (i < end && (buf.get(i) == '-' || buf.get(i) == '+')) {
+                expNegative = buf.get(i) == '-';
+                i++;
+            }
+            int exp = 0;
+            boolean expDigits = false;
+            for (; i < end && buf.get(i) >= '0' && buf.get(i) <= '9'; i++) {
+                exp = Math.min(exp * 10 + (buf.get(i) - '0'), 10000);
+                expDigits = true;
+            }
+            if (!expDigits) return CELL_OTHER;
+            scale += expNegative ? -exp : exp;
+        }
+        if (i != end) return CELL_OTHER;
+
+        double value;
+        if (digits <= 15 && scale >= -22 && scale <= 22) {
+            // Exact mantissa times an exact power of ten rounds correctly
+            value = scale < 0 ? mantissa / POW10[-scale] : mantissa * POW10[scale];
+        } else {
+            byte[] text = new byte[len];
+            for (int k = 0; k < len; k++) text[k] = buf.get(start + k);
+            value = Double.parseDouble(new String(text, StandardCharsets.US_ASCII));
+            negative = false;
+        }
+        out[0] = negative ? -value : value;
+        return decimal ? CELL_DECIMAL : CELL_INTEGER;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private static int lower(byte b) {
+        return (b >= 'A' && b <= 'Z') ? b + 32 : b;
+    }
+}
@@ -0,0 +1,160 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Versioned binary file for a trained forest:
+//   header    magic "SPRF", format version
+//   metadata  numTrees, maxDepth, maxLeaves, mtry, seed, bootstrap mode, binned training flag,
+//             trained rows, training data fingerprint, created-at millis
+//   schema    feature count + UTF-8 names, class count
+//   nodes     tree count, node count, then roots / feature / threshold / left / right / leafClass arrays
+// Saving writes a temporary file next to the target and renames it over the target, so a failed
+// save leaves the previous snapshot intact. Loading maps the file, checks every count against
+// the bytes left and every node index, and bulk-copies the node arrays; no node objects are
+// created.
+public class ModelSnapshot {
+
+    static final int MAGIC = 0x53505246; // "SPRF"
+    static final int VERSION = 2; // 2 added mtry, binned training and the data fingerprint
+
+    public static void save(RandomForestModel forest, Path path) throws IOException {
+        CompiledForest compiled = forest.getCompiled();
+        String[] names = compiled.getFeatureNames();
+        byte[][] encodedNames = new byte[names.length][];
+        long size = 4 + 4 + 4 * 4 + 8 + 4 + 4 + 8 + 8 + 8 + 4 + 4 + 4 + 4;
+        for (int f = 0; f < names.length; f++) {
+            encodedNames[f] = names[f].getBytes(StandardCharsets.UTF_8);
+            size += 4 + encodedNames[f].length;
+        }
+        int nodes = compiled.numNodes();
+        size += 4L * compiled.numTrees() + (4L * 4 + 8) * nodes;
+
+        if (size > Integer.MAX_VALUE) throw new IOException("Model too large for a snapshot: " + size + " bytes.");
+        ByteBuffer buf = ByteBuffer.allocate((int) size);
+        buf.putInt(MAGIC);
+        buf.putInt(VERSION);
+
+        buf.putInt(forest.getNumTrees());
+        buf.putInt(forest.getMaxDepth());
+        buf.putInt(forest.getMaxLeaves());
+        buf.putInt(forest.getMtry());
+        buf.putLong(forest.getSeed());
+        buf.putInt(forest.getBootstrapMode().ordinal());
+        buf.putInt(forest.isBinnedTraining() ? 1 : 0);
+        buf.putLong(forest.getTrainedRows());
+        buf.putLong(forest.getDataFingerprint());
+        buf.putLong(System.currentTimeMillis());
+
+        buf.putInt(names.length);
+        for (byte[] name : encodedNames) {
+            buf.putInt(name.length);
+            buf.put(name);
+        }
+        buf.putInt(compiled.numClasses());
+
+        buf.putInt(compiled.numTrees());
+        buf.putInt(nodes);
+        putInts(buf, compiled.roots());
+        putInts(buf, compiled.features());
+        buf.asDoubleBuffer().put(compiled.thresholds());
+        buf.position(buf.position() + 8 * nodes);
+        putInts(buf, compiled.lefts());
+        putInts(buf, compiled.rights());
+        putInts(buf, compiled.leafClasses());
+        buf.flip();
+
+        Path target = path.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buf.hasRemaining()) channel.write(buf);
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public static RandomForestModel load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.remaining() < 8 || buf.getInt() != MAGIC) {
+                throw new IOException(path + " is not a stress model snapshot.");
+            }
+            int version = buf.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported model snapshot version " + version + " in " + path);
+            }
+
+            int numTrees = buf.getInt();
+            int maxDepth = buf.getInt();
+            int maxLeaves = buf.getInt();
+            int mtry = buf.getInt();
+            long seed = buf.getLong();
+            BootstrapSample.Mode mode = BootstrapSample.Mode.values()[buf.getInt()];
+            boolean binned = buf.getInt() != 0;
+            long trainedRows = buf.getLong();
+            long fingerprint = buf.getLong();
+            buf.getLong(); // created-at, informational only
+
+            String[] names = new String[count(buf, 4)];
+            for (int f = 0; f < names.length; f++) {
+                byte[] name = new byte[count(buf, 1)];
+                buf.get(name);
+                names[f] = new String(name, StandardCharsets.UTF_8);
+            }
+            int numClasses = buf.getInt();
+
+            int treeCount = count(buf, 4);
+            int nodes = count(buf, 4 * 4 + 8);
+            int[] roots = getInts(buf, treeCount);
+            int[] feature = getInts(buf, nodes);
+            double[] threshold = new double[nodes];
+            buf.asDoubleBuffer().get(threshold);
+            buf.position(buf.position() + 8 * nodes);
+            int[] left = getInts(buf, nodes);
+            int[] right = getInts(buf, nodes);
+            int[] leafClass = getInts(buf, nodes);
+            CompiledForest.checkNodes(names.length, numClasses, roots, feature, left, right, leafClass);
+
+            CompiledForest compiled = new CompiledForest(names, numClasses, roots, feature, threshold, left, right, leafClass);
+            RandomForestModel forest = new RandomForestModel(numTrees, maxDepth, maxLeaves, seed);
+            forest.setMtry(mtry);
+            forest.setBootstrapMode(mode);
+            forest.setBinnedTraining(binned);
+            forest.restore(compiled, trainedRows, fingerprint);
+            return forest;
+
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt model snapshot " + path + ": " + e, e);
+        }
+    }
+
+    private static void putInts(ByteBuffer buf, int[] values) {
+        buf.asIntBuffer().put(values);
+        buf.position(buf.position() + 4 * values.length);
+    }
+
+    // A count of items of itemBytes each, rejected before allocation when the file cannot hold them
+    private static int count(ByteBuffer buf, int itemBytes) throws IOException {
+        int count = buf.getInt();
+        if (count < 0 || (long) count * itemBytes > buf.remaining()) {
+            throw new IOException("Bad count " + count + " with " + buf.remaining() + " bytes left.");
+        }
+        return count;
+    }
+
+    private static int[] getInts(ByteBuffer buf, int count) {
+        int[] values = new int[count];
+        buf.asIntBuffer().get(values);
+        buf.position(buf.position() + 4 * count);
+        return values;
+    }
+}
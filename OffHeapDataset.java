@@ -0,0 +1,268 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+// Feature columns and labels kept outside the Java heap: in direct buffers (copyOf) or mapped
+// from a column file (open). The GC never scans the values, and a mapped file can be larger than
+// -Xmx because the OS pages it in and out. Reads use absolute gets and are safe from any thread.
+//
+// Column file layout (little-endian):
+//   header  magic "SPCD", format version, row count, row capacity, feature count + UTF-8 names,
+//           class count, zero padding to a multiple of 8
+//   data    one capacity x 8-byte column per feature, then capacity x 4-byte labels
+// Rows past the row count are unused space left when a conversion drops rows.
+public class OffHeapDataset {
+
+    static final int MAGIC = 0x53504344; // "SPCD"
+    static final int VERSION = 1;
+    static final int MAX_ROWS = Integer.MAX_VALUE / Double.BYTES; // one column per mapping
+
+    private static final int ROWS_OFFSET = 8; // row count position in the header
+
+    private final String[] featureNames;
+    private final Map<String, Integer> schema = new HashMap<>();
+    private final DoubleBuffer[] columns;
+    private final IntBuffer labels;
+    private final int numRows;
+    private final int numClasses;
+
+    private OffHeapDataset(String[] featureNames, DoubleBuffer[] columns, IntBuffer labels, int numRows, int numClasses) {
+        this.featureNames = featureNames;
+        this.columns = columns;
+        this.labels = labels;
+        this.numRows = numRows;
+        this.numClasses = numClasses;
+        for (int f = 0; f < featureNames.length; f++) schema.put(featureNames[f], f);
+    }
+
+    // Copies the dataset into direct memory (counted against -XX:MaxDirectMemorySize)
+    public static OffHeapDataset copyOf(ColumnarDataset data) {
+        int rows = data.numRows();
+        DoubleBuffer[] columns = new DoubleBuffer[data.numFeatures()];
+        for (int f = 0; f < columns.length; f++) {
+            columns[f] = allocate((long) rows * Double.BYTES).asDoubleBuffer().put(data.column(f));
+        }
+        IntBuffer labels = allocate((long) rows * Integer.BYTES).asIntBuffer().put(data.labels());
+        return new OffHeapDataset(data.getFeatureNames().clone(), columns, labels, rows, data.numClasses());
+    }
+
+    private static ByteBuffer allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE) throw new IllegalArgumentException("Column too large for one buffer.");
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Writes the dataset as a column file for open()
+    public static void write(ColumnarDataset data, Path path) throws IOException {
+        try (Writer writer = new Writer(path, data.getFeatureNames(), data.numRows())) {
+            writer.append(data);
+        }
+    }
+
+    // Streams a CSV into a column file one chunk at a time, so the CSV never has to fit in memory.
+    // transform is applied to every chunk (e.g. DataProcessorImpl::filterData) and must treat rows
+    // independently. Returns the file mapped with open().
+    public static OffHeapDataset convert(Path csv, Path out, long chunkBytes,
+                                         UnaryOperator<ColumnarDataset> transform) throws IOException {
+        MappedCsvLoader loader = new MappedCsvLoader();
+        long capacity = loader.countRows(csv);
+        if (capacity > MAX_ROWS) {
+            throw new IOException(csv + " has " + capacity + " rows; a column file holds at most " + MAX_ROWS + ".");
+        }
+        Writer[] writer = new Writer[1];
+        try {
+            loader.forEachChunk(csv, chunkBytes, chunk -> {
+                ColumnarDataset part = transform.apply(chunk);
+                if (writer[0] == null) writer[0] = new Writer(out, part.getFeatureNames(), (int) capacity);
+                writer[0].append(part);
+            });
+        } finally {
+            if (writer[0] != null) writer[0].close();
+        }
+        return open(out);
+    }
+
+    // Appends rows to a new column file, then patches the row and class counts into the header
+    private static final class Writer implements AutoCloseable {
+        final FileChannel channel;
+        final String[] names;
+        final int capacity;
+        final long classesOffset;
+        final long dataStart;
+        int rows;
+        int numClasses;
+
+        Writer(Path path, String[] names, int capacity) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+            this.names = names;
+            this.capacity = capacity;
+
+            byte[][] encoded = new byte[names.length][];
+            long size = 4 + 4 + 8 + 8 + 4 + 4;
+            for (int f = 0; f < names.length; f++) {
+                encoded[f] = names[f].getBytes(StandardCharsets.UTF_8);
+                size += 4 + encoded[f].length;
+            }
+            this.classesOffset = size - 4;
+            this.dataStart = (size + 7) & ~7L;
+
+            ByteBuffer header = ByteBuffer.allocate((int) dataStart).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(0).putLong(capacity).putInt(names.length);
+            for (byte[] name : encoded) header.putInt(name.length).put(name);
+            header.putInt(0);
+            header.position(0);
+            writeFully(header, 0);
+        }
+
+        void append(ColumnarDataset part) throws IOException {
+            if (!Arrays.equals(part.getFeatureNames(), names)) {
+                throw new IOException("Chunk schema " + Arrays.toString(part.getFeatureNames())
+                    + " differs from " + Arrays.toString(names) + ".");
+            }
+            int n = part.numRows();
+            if ((long) rows + n > capacity) throw new IOException("Column file capacity " + capacity + " exceeded.");
+
+            ByteBuffer buf = ByteBuffer.allocate(n * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int f = 0; f < names.length; f++) {
+                buf.clear();
+                buf.asDoubleBuffer().put(part.column(f));
+                writeFully(buf, dataStart + ((long) f * capacity + rows) * Double.BYTES);
+            }
+            buf.clear().limit(n * Integer.BYTES);
+            buf.asIntBuffer().put(part.labels());
+            writeFully(buf, labelsStart() + (long) rows * Integer.BYTES);
+
+            rows += n;
+            numClasses = Math.max(numClasses, part.numClasses());
+        }
+
+        long labelsStart() {
+            return dataStart + (long) names.length * capacity * Double.BYTES;
+        }
+
+        private void writeFully(ByteBuffer buf, long position) throws IOException {
+            while (buf.hasRemaining()) position += channel.write(buf, position);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                ByteBuffer counts = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                writeFully(counts.putLong(0, rows), ROWS_OFFSET);
+                counts.clear().limit(4);
+                writeFully(counts.putInt(0, numClasses), classesOffset);
+                // Extend the file over the whole data area even when trailing rows were dropped
+                if (channel.size() < labelsStart() + (long) capacity * Integer.BYTES) {
+                    writeFully(ByteBuffer.allocate(1), labelsStart() + (long) capacity * Integer.BYTES - 1);
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // Maps a column file written by write() or convert(); the mapping stays valid after the
+    // channel is closed
+    public static OffHeapDataset open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 1 << 20))
+                .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.remaining() < 8 || header.getInt() != MAGIC) {
+                throw new IOException(path + " is not a column file.");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported column file version " + version + " in " + path);
+            }
+            long rows = header.getLong();
+            long capacity = header.getLong();
+            String[] names = new String[header.getInt()];
+            for (int f = 0; f < names.length; f++) {
+                byte[] name = new byte[header.getInt()];
+                header.get(name);
+                names[f] = new String(name, StandardCharsets.UTF_8);
+            }
+            int numClasses = header.getInt();
+            long dataStart = (header.position() + 7) & ~7L;
+
+            long expected = dataStart + capacity * (names.length * (long) Double.BYTES + Integer.BYTES);
+            if (rows > capacity || capacity > MAX_ROWS || channel.size() < expected) {
+                throw new IOException("Corrupt column file " + path + ".");
+            }
+
+            DoubleBuffer[] columns = new DoubleBuffer[names.length];
+            for (int f = 0; f < names.length; f++) {
+                columns[f] = map(channel, dataStart + f * capacity * Double.BYTES, rows * Double.BYTES).asDoubleBuffer();
+            }
+            IntBuffer labels = map(channel, dataStart + names.length * capacity * Double.BYTES, rows * Integer.BYTES)
+                .asIntBuffer();
+            return new OffHeapDataset(names, columns, labels, (int) rows, numClasses);
+
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt column file " + path + ": " + e, e);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long bytes) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public int numFeatures() {
+        return featureNames.length;
+    }
+
+    public String[] getFeatureNames() {
+        return featureNames.clone();
+    }
+
+    public String featureName(int feature) {
+        return featureNames[feature];
+    }
+
+    // Returns -1 when the feature is not part of the schema
+    public int featureIndex(String name) {
+        Integer idx = schema.get(name);
+        return idx == null ? -1 : idx;
+    }
+
+    // Read-only view of one column; NaN = missing
+    public DoubleBuffer column(int feature) {
+        return columns[feature].asReadOnlyBuffer();
+    }
+
+    public double value(int row, int feature) {
+        return columns[feature].get(row);
+    }
+
+    // Copies one row into out, in getFeatureNames() order
+    public void row(int row, double[] out) {
+        for (int f = 0; f < columns.length; f++) out[f] = columns[f].get(row);
+    }
+
+    public int label(int row) {
+        return labels.get(row);
+    }
+
+    // Heap copy of the labels (4 bytes per row), e.g. for bootstrap weights
+    public int[] labels() {
+        int[] copy = new int[numRows];
+        labels.get(0, copy);
+        return copy;
+    }
+
+    public int numClasses() {
+        return numClasses;
+    }
+}
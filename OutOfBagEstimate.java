@@ -0,0 +1,84 @@
+import java.util.BitSet;
+
+// Out-of-bag votes for a forest's training rows: each row is scored only by the trees whose
+// bootstrap sample left it out, which gives a validation accuracy without a held-out split.
+// Trees can be added one at a time, from any thread, as they finish training.
+public class OutOfBagEstimate {
+
+    // Source of feature rows in the forest's feature order
+    public interface Rows {
+        void row(int row, double[] out);
+    }
+
+    private final int[] labels;
+    private final int numClasses;
+    private final int[] votes; // numRows x numClasses
+
+    public OutOfBagEstimate(int[] labels, int numClasses) {
+        this.labels = labels;
+        this.numClasses = Math.max(numClasses, 1);
+        this.votes = new int[labels.length * this.numClasses];
+    }
+
+    public int numRows() {
+        return labels.length;
+    }
+
+    // Scores tree `tree` of the forest on the labelled rows outside its in-bag set
+    public void addTree(CompiledForest forest, int tree, BitSet inBag, Rows rows) {
+        int[] predicted = new int[labels.length];
+        double[] x = new double[forest.getFeatureNames().length];
+        for (int row = inBag.nextClearBit(0); row < labels.length; row = inBag.nextClearBit(row + 1)) {
+            predicted[row] = -1;
+            if (labels[row] < 0) continue;
+            rows.row(row, x);
+            predicted[row] = forest.predictTree(tree, x);
+        }
+
+        synchronized (votes) {
+            for (int row = inBag.nextClearBit(0); row < labels.length; row = inBag.nextClearBit(row + 1)) {
+                int c = predicted[row];
+                if (c >= 0 && c < numClasses) votes[row * numClasses + c]++;
+            }
+        }
+    }
+
+    // Share of rows with at least one out-of-bag vote whose majority vote is right; NaN if none
+    public double accuracy() {
+        synchronized (votes) {
+            int covered = 0;
+            int correct = 0;
+            for (int row = 0; row < labels.length; row++) {
+                int offset = row * numClasses;
+                int best = -1;
+                int bestVotes = 0;
+                for (int c = 0; c < numClasses; c++) {
+                    if (votes[offset + c] > bestVotes) {
+                        best = c;
+                        bestVotes = votes[offset + c];
+                    }
+                }
+                if (best < 0) continue;
+                covered++;
+                if (best == labels[row]) correct++;
+            }
+            return covered == 0 ? Double.NaN : correct / (double) covered;
+        }
+    }
+
+    // Rows that at least one tree has scored
+    public int coveredRows() {
+        synchronized (votes) {
+            int covered = 0;
+            for (int row = 0; row < labels.length; row++) {
+                for (int c = 0; c < numClasses; c++) {
+                    if (votes[row * numClasses + c] > 0) {
+                        covered++;
+                        break;
+                    }
+                }
+            }
+            return covered;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.UnaryOperator;
+
+// Trains a forest from a CSV that does not fit in memory, streaming it in chunks.
+// The first pass draws a reservoir sample of rows to fix each feature's bin edges. After that
+// all trees grow together, one level per pass: every row is routed down every tree to the open
+// node it reaches, and its Poisson(1) bootstrap weight (derived from the tree seed and the row
+// number, so nothing is stored) is added to that node's class histogram. Each open node then
+// picks its split exactly as in-memory histogram training would. Memory is one chunk plus the
+// open nodes' histograms; when those exceed the budget, a level takes several passes.
+// Rows outside the sample can hold values below the first bin or above the last one: the first
+// bin takes everything below it and the last bin's upper bound is widened to +infinity, so they
+// land in the end bins. Thresholds sit between non-empty bins, so prediction sends such values
+// the way training did. Histograms count in ints, and a tree whose bootstrap weight reaching
+// one node passes Integer.MAX_VALUE (about 2^31 rows) fails instead of wrapping around.
+public class OutOfCoreTrainer {
+
+    private final RandomForestModel forest;
+    private long chunkBytes = 64L << 20;
+    private int sampleRows = 200_000;
+    private long histogramBudgetBytes = 256L << 20;
+    private ExecutorService executor = ForkJoinPool.commonPool();
+    private int passes;
+
+    // A node of a tree being grown; open while it waits for its histogram
+    private static final class Node {
+        final DecisionTreeNode node = new DecisionTreeNode();
+        final long id;
+        final int depth;
+        int[] counts;              // weighted class counts; null for a root until its first pass
+        int[] histogram;           // feature x bin x class, only during the pass that fills it
+        long weight;               // bootstrap weight added to histogram, to catch int overflow
+        DecisionTreeModel.NodeSplit split;
+        Node left;
+        Node right;
+
+        Node(long id, int depth, int[] counts) {
+            this.id = id;
+            this.depth = depth;
+            this.counts = counts;
+        }
+    }
+
+    private static final class Tree {
+        final DecisionTreeModel builder;
+        final BootstrapSample sample;
+        final Node root = new Node(1, 0, null);
+        int leaves = 1;
+
+        Tree(DecisionTreeModel builder, BootstrapSample sample) {
+            this.builder = builder;
+            this.sample = sample;
+        }
+    }
+
+    public OutOfCoreTrainer(RandomForestModel forest) {
+        this.forest = forest;
+    }
+
+    // CSV bytes parsed per chunk
+    public void setChunkBytes(long chunkBytes) {
+        this.chunkBytes = Math.max(1, chunkBytes);
+    }
+
+    // Rows sampled to place bin edges; files with no more rows than this bin exactly like in memory
+    public void setSampleRows(int sampleRows) {
+        this.sampleRows = Math.max(1, sampleRows);
+    }
+
+    // Memory for open nodes' histograms; bounds how many nodes one pass can serve
+    public void setHistogramBudgetBytes(long histogramBudgetBytes) {
+        this.histogramBudgetBytes = histogramBudgetBytes;
+    }
+
+    // null routes every chunk through the trees on the calling thread
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    // Passes over the file made by the last train(), including the sampling pass
+    public int getPasses() {
+        return passes;
+    }
+
+    // Adds the forest's numTrees trees, trained on transform(chunk) for every chunk of the CSV
+    // (e.g. DataProcessorImpl::filterData; it must treat rows independently). Trees use Poisson
+    // bootstrap weights whatever the forest's bootstrap mode. With maxLeaves <= 0 they are the
+    // trees train(BinnedDataset) would grow with Poisson weights on the same bins.
+    public void train(Path csv, UnaryOperator<ColumnarDataset> transform) throws IOException {
+        long start = System.nanoTime();
+        passes = 0;
+        MappedCsvLoader loader = new MappedCsvLoader();
+
+        // Pass 1: schema, row and class counts, and a reservoir sample for the bin edges
+        Random rand = new Random(forest.getSeed());
+        String[][] names = new String[1][];
+        double[][][] sample = new double[1][][];
+        long[] rows = new long[1];
+        int[] maxLabel = {-1};
+        loader.forEachChunk(csv, chunkBytes, raw -> {
+            ColumnarDataset chunk = transform.apply(raw);
+            if (names[0] == null) {
+                names[0] = chunk.getFeatureNames();
+                sample[0] = new double[names[0].length][sampleRows];
+            }
+            for (int row = 0; row < chunk.numRows(); row++, rows[0]++) {
+                maxLabel[0] = Math.max(maxLabel[0], chunk.label(row));
+                long slot = rows[0] < sampleRows ? rows[0] : (long) (rand.nextDouble() * (rows[0] + 1));
+                if (slot < sampleRows) {
+                    for (int f = 0; f < names[0].length; f++) sample[0][f][(int) slot] = chunk.value(row, f);
+                }
+            }
+        });
+        passes++;
+        if (maxLabel[0] < 0) {
+            throw new IllegalStateException("No valid rows with 'Stress level' found during bootstrapping.");
+        }
+
+        String[] featureNames = names[0];
+        int numFeatures = featureNames.length;
+        int numClasses = maxLabel[0] + 1;
+        int kept = (int) Math.min(rows[0], sampleRows);
+        double[][] lower = new double[numFeatures][];
+        double[][] upper = new double[numFeatures][];
+        for (int f = 0; f < numFeatures; f++) {
+            double[][] edges = BinnedDataset.binEdges(Arrays.copyOf(sample[0][f], kept));
+            lower[f] = edges[0];
+            upper[f] = edges[1];
+            // Unsampled values past the last edge belong to the last bin
+            if (upper[f].length > 0) upper[f][upper[f].length - 1] = Double.POSITIVE_INFINITY;
+        }
+        sample[0] = null;
+        BinnedDataset edges = new BinnedDataset(featureNames, lower, upper, new byte[numFeatures][0], new int[0], numClasses);
+
+        Tree[] trees = new Tree[forest.getNumTrees()];
+        for (int t = 0; t < trees.length; t++) {
+            long treeSeed = RandomForestModel.treeSeed(forest.getSeed(), t);
+            trees[t] = new Tree(forest.treeBuilder(numFeatures, treeSeed),
+                new BootstrapSample(treeSeed, BootstrapSample.Mode.POISSON));
+        }
+
+        // One level of every tree per round; a round takes as many passes as the budget needs
+        int histogramInts = numFeatures * (BinnedDataset.MISSING_BIN + 1) * numClasses;
+        int perPass = (int) Math.max(1, Math.min(Integer.MAX_VALUE, histogramBudgetBytes / (4L * histogramInts)));
+        List<Node> open = new ArrayList<>();
+        for (Tree tree : trees) open.add(tree.root);
+        List<Tree> owners = new ArrayList<>(Arrays.asList(trees));
+
+        while (!open.isEmpty()) {
+            for (int from = 0; from < open.size(); from += perPass) {
+                List<Node> batch = open.subList(from, Math.min(open.size(), from + perPass));
+                for (Node node : batch) node.histogram = new int[histogramInts];
+                fill(loader, csv, transform, edges, trees);
+                passes++;
+                for (int i = from; i < from + batch.size(); i++) {
+                    Node node = open.get(i);
+                    if (node.weight > Integer.MAX_VALUE) {
+                        throw new IllegalStateException("Bootstrap weight " + node.weight + " at one tree node overflows the int "
+                            + "histograms; out-of-core training supports up to about " + Integer.MAX_VALUE + " rows.");
+                    }
+                    if (node.counts == null) node.counts = classCounts(node.histogram, numClasses);
+                    node.split = owners.get(i).builder.splitNode(edges, node.histogram, node.counts, node.id, node.depth);
+                    node.histogram = null;
+                }
+            }
+            List<Node> next = new ArrayList<>();
+            List<Tree> nextOwners = new ArrayList<>();
+            applyLevel(open, owners, featureNames, next, nextOwners);
+            open = next;
+            owners = nextOwners;
+        }
+
+        DecisionTreeNode[] built = new DecisionTreeNode[trees.length];
+        long nanosPerTree = (System.nanoTime() - start) / Math.max(1, trees.length);
+        for (int t = 0; t < trees.length; t++) {
+            built[t] = trees[t].root.node;
+            PipelineMetrics.get().recordTree(nanosPerTree, built[t]);
+        }
+        forest.addTrees(built, featureNames, rows[0]);
+    }
+
+    // One pass: every labelled row adds its bootstrap weight to the open node it reaches in each tree
+    private void fill(MappedCsvLoader loader, Path csv, UnaryOperator<ColumnarDataset> transform,
+                      BinnedDataset edges, Tree[] trees) throws IOException {
+        int numFeatures = edges.numFeatures();
+        int classes = edges.numClasses();
+        int stride = (BinnedDataset.MISSING_BIN + 1) * classes;
+        long[] firstRow = new long[1];
+
+        loader.forEachChunk(csv, chunkBytes, raw -> {
+            ColumnarDataset chunk = transform.apply(raw);
+            int n = chunk.numRows();
+            byte[][] bins = new byte[numFeatures][n];
+            for (int f = 0; f < numFeatures; f++) {
+                double[] column = chunk.column(f);
+                for (int row = 0; row < n; row++) bins[f][row] = (byte) BinnedDataset.binOf(column[row], edges.upperBounds(f));
+            }
+            int[] labels = chunk.labels();
+            long offset = firstRow[0];
+
+            // Trees own disjoint histograms, so each tree is one task
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (Tree tree : trees) {
+                tasks.add(() -> {
+                    for (int row = 0; row < n; row++) {
+                        if (labels[row] < 0) continue;
+                        int weight = tree.sample.poissonWeight(offset + row);
+                        if (weight == 0) continue;
+
+                        Node node = tree.root;
+                        while (node.left != null) {
+                            node = (bins[node.split.feature][row] & 0xFF) < node.split.leftBins ? node.left : node.right;
+                        }
+                        int[] hist = node.histogram;
+                        if (hist == null) continue; // a leaf, or open but served by another pass
+                        node.weight += weight;
+                        for (int f = 0; f < numFeatures; f++) {
+                            hist[f * stride + (bins[f][row] & 0xFF) * classes + labels[row]] += weight;
+                        }
+                    }
+                    return null;
+                });
+            }
+            RandomForestModel.runAll(executor, tasks, "Out-of-core training", IOException::new);
+            firstRow[0] += n;
+        });
+    }
+
+    private static int[] classCounts(int[] histogram, int classes) {
+        int[] counts = new int[classes];
+        for (int b = 0; b <= BinnedDataset.MISSING_BIN; b++) {
+            for (int c = 0; c < classes; c++) counts[c] += histogram[b * classes + c]; // feature 0 sees every row
+        }
+        return counts;
+    }
+
+    // Turns the level's chosen splits into children. Under maxLeaves a tree takes its level's
+    // splits in order of gain until it reaches the cap; the rest stay leaves.
+    private void applyLevel(List<Node> level, List<Tree> owners, String[] featureNames,
+                            List<Node> next, List<Tree> nextOwners) {
+        Integer[] order = new Integer[level.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingDouble((Integer i) -> level.get(i).split == null ? 0 : -level.get(i).split.gain)
+            .thenComparingLong(i -> level.get(i).id));
+
+        for (Node node : level) {
+            node.node.is_leaf = true;
+            node.node.predicted_class = total(node.counts) == 0 ? -1 : DecisionTreeModel.argMax(node.counts);
+        }
+        int maxLeaves = forest.getMaxLeaves();
+        for (int i : order) {
+            Node node = level.get(i);
+            Tree tree = owners.get(i);
+            DecisionTreeModel.NodeSplit split = node.split;
+            if (split == null || (maxLeaves > 0 && tree.leaves >= maxLeaves)) {
+                node.split = null;
+                continue;
+            }
+            tree.leaves++;
+            node.left = new Node(2 * node.id, node.depth + 1, split.leftCounts);
+            node.right = new Node(2 * node.id + 1, node.depth + 1, split.rightCounts);
+            node.node.is_leaf = false;
+            node.node.split_feature = featureNames[split.feature];
+            node.node.threshold = split.threshold;
+            node.node.left = node.left.node;
+            node.node.right = node.right.node;
+
+            for (Node child : new Node[] {node.left, node.right}) {
+                child.node.is_leaf = true;
+                child.node.predicted_class = total(child.counts) == 0 ? -1 : DecisionTreeModel.argMax(child.counts);
+                if (tree.builder.mightSplit(child.counts, child.depth)) {
+                    next.add(child);
+                    nextOwners.add(tree);
+                }
+            }
+        }
+    }
+
+    private static int total(int[] counts) {
+        int sum = 0;
+        for (int count : counts) sum += count;
+        return sum;
+    }
+}
@@ -0,0 +1,315 @@
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide counters and latency histograms for loading, training and serving. Recording
+// is lock-free, so the hot paths (predict, recommend) only pay for two nanoTime calls.
+// Exposed over JMX via register(), and optionally printed every few seconds via startLogging().
+public class PipelineMetrics implements PipelineMetricsMBean {
+
+    public static final String OBJECT_NAME = "StressPrediction:type=PipelineMetrics";
+
+    private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+
+    // Log-linear histogram of nanosecond durations: 8 buckets per power of two (~6% resolution)
+    static final class Histogram {
+        private static final int SUB_BUCKETS = 8;
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+
+        void record(long nanos) {
+            record(nanos, 1);
+        }
+
+        // times observations of the same duration
+        void record(long nanos, long times) {
+            long v = Math.max(0, nanos);
+            buckets.addAndGet(bucket(v), times);
+            count.add(times);
+            sum.add(v * times);
+        }
+
+        private static int bucket(long v) {
+            if (v < SUB_BUCKETS) return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            int sub = (int) (v >>> (exp - 3)) & (SUB_BUCKETS - 1);
+            return (exp - 2) * SUB_BUCKETS + sub;
+        }
+
+        // Midpoint of the bucket's value range
+        private static double value(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int exp = bucket / SUB_BUCKETS + 2;
+            int sub = bucket % SUB_BUCKETS;
+            double low = (double) (SUB_BUCKETS + sub) * (1L << (exp - 3));
+            return low + (1L << (exp - 3)) / 2.0;
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double mean() {
+            long n = count.sum();
+            return n == 0 ? 0.0 : sum.sum() / (double) n;
+        }
+
+        double percentile(double p) {
+            long n = count.sum();
+            if (n == 0) return 0.0;
+            long rank = (long) Math.ceil(p * n);
+            long seen = 0;
+            for (int b = 0; b < buckets.length(); b++) {
+                seen += buckets.get(b);
+                if (seen >= rank) return value(b);
+            }
+            return value(buckets.length() - 1);
+        }
+
+        void reset() {
+            for (int b = 0; b < buckets.length(); b++) buckets.set(b, 0);
+            count.reset();
+            sum.reset();
+        }
+    }
+
+    private final LongAdder loads = new LongAdder();
+    private volatile long lastLoadNanos;
+    private volatile long lastLoadRows;
+
+    private final Histogram treeBuild = new Histogram();
+    private final LongAdder treeNodes = new LongAdder();
+    private final AtomicLong maxTreeDepth = new AtomicLong();
+
+    // The forest being served; training alone (grid search folds included) never replaces it
+    private volatile RandomForestModel model;
+
+    private final Histogram prediction = new Histogram();
+    private final Histogram recommendation = new Histogram();
+    private final LongAdder serverRequests = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+
+    private ScheduledExecutorService logger;
+
+    public static PipelineMetrics get() {
+        return INSTANCE;
+    }
+
+    // Publishes the metrics on the platform MBean server; safe to call more than once
+    public synchronized void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME + ".", e);
+        }
+    }
+
+    // Prints a one-line summary to out every periodSeconds until stopLogging()
+    public synchronized void startLogging(long periodSeconds, PrintStream out) {
+        stopLogging();
+        logger = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "pipeline-metrics-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.scheduleAtFixedRate(() -> out.println(this), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopLogging() {
+        if (logger != null) {
+            logger.shutdownNow();
+            logger = null;
+        }
+    }
+
+    void recordLoad(long nanos, long rows) {
+        loads.increment();
+        lastLoadNanos = nanos;
+        lastLoadRows = rows;
+    }
+
+    void recordTree(long nanos, DecisionTreeNode root) {
+        treeBuild.record(nanos);
+        int[] stats = new int[2]; // nodes, depth
+        measure(root, 0, stats);
+        treeNodes.add(stats[0]);
+        maxTreeDepth.accumulateAndGet(stats[1], Math::max);
+    }
+
+    private static void measure(DecisionTreeNode node, int depth, int[] stats) {
+        stats[0]++;
+        stats[1] = Math.max(stats[1], depth);
+        if (!node.isLeaf()) {
+            measure(node.left, depth + 1, stats);
+            measure(node.right, depth + 1, stats);
+        }
+    }
+
+    // Read on demand, so the gauges follow the served forest's update() calls
+    void recordModel(RandomForestModel model) {
+        this.model = model;
+    }
+
+    private CompiledForest modelForest() {
+        RandomForestModel current = model;
+        return current == null ? null : current.getCompiled();
+    }
+
+    void recordPrediction(long nanos) {
+        prediction.record(nanos);
+    }
+
+    // A batch scored in one call (PredictionBatcher, BulkScorer): each row counts as a
+    // prediction that took its share of the batch's time
+    void recordPredictions(long nanos, int rows) {
+        if (rows > 0) prediction.record(nanos / rows, rows);
+    }
+
+    void recordRecommendation(long nanos) {
+        recommendation.record(nanos);
+    }
+
+    void recordServerRequest(boolean failed) {
+        serverRequests.increment();
+        if (failed) serverErrors.increment();
+    }
+
+    @Override
+    public long getDatasetLoads() {
+        return loads.sum();
+    }
+
+    @Override
+    public double getLastLoadMillis() {
+        return lastLoadNanos / 1e6;
+    }
+
+    @Override
+    public long getLastLoadRows() {
+        return lastLoadRows;
+    }
+
+    @Override
+    public double getLastLoadRowsPerSecond() {
+        return lastLoadNanos == 0 ? 0.0 : lastLoadRows / (lastLoadNanos / 1e9);
+    }
+
+    @Override
+    public long getTreesBuilt() {
+        return treeBuild.count();
+    }
+
+    @Override
+    public double getTreeBuildMillisMean() {
+        return treeBuild.mean() / 1e6;
+    }
+
+    @Override
+    public double getTreeBuildMillisP99() {
+        return treeBuild.percentile(0.99) / 1e6;
+    }
+
+    @Override
+    public double getMeanTreeNodes() {
+        long trees = treeBuild.count();
+        return trees == 0 ? 0.0 : treeNodes.sum() / (double) trees;
+    }
+
+    @Override
+    public int getMaxTreeDepth() {
+        return (int) maxTreeDepth.get();
+    }
+
+    @Override
+    public int getModelTrees() {
+        CompiledForest forest = modelForest();
+        return forest == null ? 0 : forest.numTrees();
+    }
+
+    @Override
+    public int getModelNodes() {
+        CompiledForest forest = modelForest();
+        return forest == null ? 0 : forest.numNodes();
+    }
+
+    @Override
+    public long getModelBytes() {
+        CompiledForest forest = modelForest();
+        return forest == null ? 0 : forest.memoryBytes();
+    }
+
+    @Override
+    public long getPredictions() {
+        return prediction.count();
+    }
+
+    @Override
+    public double getPredictionMicrosP50() {
+        return prediction.percentile(0.50) / 1e3;
+    }
+
+    @Override
+    public double getPredictionMicrosP99() {
+        return prediction.percentile(0.99) / 1e3;
+    }
+
+    @Override
+    public long getRecommendations() {
+        return recommendation.count();
+    }
+
+    @Override
+    public double getRecommendationMicrosP50() {
+        return recommendation.percentile(0.50) / 1e3;
+    }
+
+    @Override
+    public double getRecommendationMicrosP99() {
+        return recommendation.percentile(0.99) / 1e3;
+    }
+
+    @Override
+    public long getServerRequests() {
+        return serverRequests.sum();
+    }
+
+    @Override
+    public long getServerErrors() {
+        return serverErrors.sum();
+    }
+
+    @Override
+    public void reset() {
+        loads.reset();
+        lastLoadNanos = 0;
+        lastLoadRows = 0;
+        treeBuild.reset();
+        treeNodes.reset();
+        maxTreeDepth.set(0);
+        prediction.reset();
+        recommendation.reset();
+        serverRequests.reset();
+        serverErrors.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[metrics] load %.1f ms (%.0f rows/s) | trees %d, build mean %.1f ms p99 %.1f ms, "
+                + "%.0f nodes, depth %d | model %d trees %d nodes %d KB | predict %d p50 %.1f us p99 %.1f us | "
+                + "recommend %d p50 %.1f us p99 %.1f us | requests %d errors %d",
+            getLastLoadMillis(), getLastLoadRowsPerSecond(), getTreesBuilt(), getTreeBuildMillisMean(),
+            getTreeBuildMillisP99(), getMeanTreeNodes(), getMaxTreeDepth(), getModelTrees(), getModelNodes(),
+            getModelBytes() / 1024, getPredictions(), getPredictionMicrosP50(), getPredictionMicrosP99(),
+            getRecommendations(), getRecommendationMicrosP50(), getRecommendationMicrosP99(),
+            getServerRequests(), getServerErrors());
+    }
+}
@@ -0,0 +1,33 @@
+// JMX view of PipelineMetrics (registered as StressPrediction:type=PipelineMetrics)
+public interface PipelineMetricsMBean {
+
+    // Dataset loading (DataProcessorImpl)
+    long getDatasetLoads();
+    double getLastLoadMillis();
+    long getLastLoadRows();
+    double getLastLoadRowsPerSecond();
+
+    // Training
+    long getTreesBuilt();
+    double getTreeBuildMillisMean();
+    double getTreeBuildMillisP99();
+    double getMeanTreeNodes();
+    int getMaxTreeDepth();
+
+    // Current model
+    int getModelTrees();
+    int getModelNodes();
+    long getModelBytes();
+
+    // Serving
+    long getPredictions();
+    double getPredictionMicrosP50();
+    double getPredictionMicrosP99();
+    long getRecommendations();
+    double getRecommendationMicrosP50();
+    double getRecommendationMicrosP99();
+    long getServerRequests();
+    long getServerErrors();
+
+    void reset();
+}
@@ -0,0 +1,105 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+// Coalesces concurrent single-row predictions into small batches. The first request of a
+// batch opens a time window; everything that arrives within it (up to maxBatch rows) is
+// scored together with one predictAll call.
+public class PredictionBatcher implements AutoCloseable {
+
+    private static final class Pending {
+        final double[] features;
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        Pending(double[] features) {
+            this.features = features;
+        }
+    }
+
+    private final RandomForestModel forest;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    public PredictionBatcher(RandomForestModel forest, long windowMicros, int maxBatch) {
+        this.forest = forest;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.dispatcher = new Thread(this::dispatchLoop, "prediction-batcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public CompletableFuture<Integer> submit(double[] features) {
+        Pending pending = new Pending(features);
+        if (!running) {
+            pending.result.completeExceptionally(new IllegalStateException("Batcher is closed."));
+            return pending.result;
+        }
+        queue.add(pending);
+        // close() may have drained the queue between the check above and the add
+        if (!running && queue.remove(pending)) {
+            pending.result.completeExceptionally(new IllegalStateException("Batcher is closed."));
+        }
+        return pending.result;
+    }
+
+    private void dispatchLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        queue.drainTo(batch, maxBatch - batch.size());
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                score(batch);
+            } catch (InterruptedException e) {
+                score(batch); // finish what was already collected
+                if (!running) break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void score(List<Pending> batch) {
+        if (batch.isEmpty()) return;
+        double[][] rows = new double[batch.size()][];
+        for (int i = 0; i < rows.length; i++) rows[i] = batch.get(i).features;
+        int[] out = new int[rows.length];
+        try {
+            long start = System.nanoTime();
+            forest.predictAll(rows, out);
+            PipelineMetrics.get().recordPredictions(System.nanoTime() - start, rows.length);
+            for (int i = 0; i < rows.length; i++) batch.get(i).result.complete(out[i]);
+        } catch (RuntimeException e) {
+            for (Pending pending : batch) pending.result.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Pending pending; (pending = queue.poll()) != null; ) {
+            pending.result.completeExceptionally(new IllegalStateException("Batcher is closed."));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+// JSON prediction service on the JDK's built-in HTTP server.
+//   POST /predict        {"Caffeine intake": 200, "Heart Rate": 120, ...}  -> {"stressLevel": 1}
+//   POST /predict/batch  [{...}, {...}]                                     -> {"predictions": [0, 1]}
+//   POST /recommend      {...features, optional "Stress level"}             -> {"stressLevel": 1, "recommendations": [...]}
+// Single /predict calls go through a PredictionBatcher so concurrent requests share one predictAll.
+public class PredictionServer {
+
+    // How long a /predict or /recommend call waits for its batch before answering 503
+    static final long PREDICT_TIMEOUT_MILLIS = 10_000;
+
+    private final RandomForestModel forest;
+    private final RecommendationEngine recommender;
+    private final ColumnarDataset dataset;
+    private final PredictionBatcher batcher;
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;
+
+    public PredictionServer(RandomForestModel forest, RecommendationEngine recommender, ColumnarDataset dataset,
+                            int port, long batchWindowMicros, int maxBatch) throws IOException {
+        this.forest = forest;
+        this.recommender = recommender;
+        this.dataset = dataset;
+        this.batcher = new PredictionBatcher(forest, batchWindowMicros, maxBatch);
+        PipelineMetrics.get().recordModel(forest);
+        this.requestExecutor = newRequestExecutor();
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.createContext("/predict/batch", exchange -> handle(exchange, this::predictBatch));
+        server.createContext("/predict", exchange -> handle(exchange, this::predict));
+        server.createContext("/recommend", exchange -> handle(exchange, this::recommend));
+        server.setExecutor(requestExecutor);
+    }
+
+    // Virtual thread per request when the runtime has them (JDK 21+), otherwise a cached pool
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        batcher.close();
+        requestExecutor.shutdown();
+    }
+
+    private interface Endpoint {
+        Object respond(Object body) throws Exception;
+    }
+
+    private void handle(HttpExchange exchange, Endpoint endpoint) throws IOException {
+        int status = 200;
+        Object response;
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                status = 405;
+                response = Map.of("error", "Use POST.");
+            } else {
+                response = endpoint.respond(Json.parse(readBody(exchange.getRequestBody())));
+            }
+        } catch (IllegalArgumentException | ClassCastException e) {
+            status = 400;
+            response = Map.of("error", String.valueOf(e.getMessage()));
+        } catch (TimeoutException e) {
+            status = 503;
+            response = Map.of("error", "Prediction timed out.");
+        } catch (Exception e) {
+            status = 500;
+            response = Map.of("error", String.valueOf(e.getMessage()));
+        }
+
+        PipelineMetrics.get().recordServerRequest(status != 200);
+
+        byte[] bytes = Json.write(response).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private Object predict(Object body) throws Exception {
+        int predicted = predictOne(asObject(body));
+        return Map.of("stressLevel", predicted);
+    }
+
+    private int predictOne(Map<String, Object> input) throws Exception {
+        try {
+            return batcher.submit(forest.getCompiled().encode(input)).get(PREDICT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private Object predictBatch(Object body) {
+        if (!(body instanceof List)) throw new IllegalArgumentException("Expected a JSON array of objects.");
+        List<?> items = (List<?>) body;
+        CompiledForest compiled = forest.getCompiled();
+        double[][] rows = new double[items.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = compiled.encode(asObject(items.get(i)));
+        }
+        int[] out = new int[rows.length];
+        forest.predictAll(rows, out);
+        return Map.of("predictions", out);
+    }
+
+    private Object recommend(Object body) throws Exception {
+        Map<String, Object> input = new HashMap<>(asObject(body));
+        Object given = input.get("Stress level");
+        int stress = (given instanceof Number) ? ((Number) given).intValue() : predictOne(input);
+        input.put("Stress level", stress);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("stressLevel", stress);
+        response.put("recommendations", recommender.generateRecommendations(input, dataset));
+        return response;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asObject(Object body) {
+        if (!(body instanceof Map)) throw new IllegalArgumentException("Expected a JSON object.");
+        return (Map<String, Object>) body;
+    }
+}
@@ -1,73 +1,582 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 
 public class RandomForestModel {
 
-    private List<DecisionTreeNode> trees = new ArrayList<>();
+    private List<DecisionTreeNode> trees = new ArrayList<>(); // null until needed for a loaded snapshot
+    private String[] featureNames = new String[0];
+    private volatile CompiledForest compiled;
+    private volatile long version;                  // bumped whenever the trees change
     private int numTrees;
     private int maxDepth;
     private int maxLeaves;
+    private int mtry;                               // features searched per split; 0 = sqrt(#features)
+    private long seed;
+    private BootstrapSample.Mode bootstrapMode = BootstrapSample.Mode.MULTINOMIAL;
+    private long trainedRows;
+    private long dataFingerprint;                   // ColumnarDataset.fingerprint() of the data train() saw; 0 = unknown
+    private boolean binnedTraining;
+    private boolean outOfBagTracking = true;
+    private List<BitSet> inBag = new ArrayList<>(); // per tree, null where unknown (earlier or loaded trees)
+    private OutOfBagEstimate outOfBag;              // from the latest train call
+
+    // Online updates: recent rows, and each tree's decayed accuracy on the batches it has scored
+    private static final double SCORE_DECAY = 0.5;
+    private int updateWindow = 10_000;
+    private int treesPerUpdate;                     // 0 = a tenth of the forest
+    private ColumnarDataset window;
+    private double[] treeCorrect = new double[0];
+    private double[] treeSeen = new double[0];
+    private int nextTreeIndex;
+    private double lastUpdateAccuracy = Double.NaN;
+
+    // null runs every tree on the calling thread
+    private ExecutorService executor = ForkJoinPool.commonPool();
+    private TrainingProgressListener progressListener = new ConsoleProgressBar();
 
     public RandomForestModel(int numTrees, int maxDepth, int maxLeaves) {
+        this(numTrees, maxDepth, maxLeaves, new Random().nextLong());
+    }
+
+    public RandomForestModel(int numTrees, int maxDepth, int maxLeaves, long seed) {
         this.numTrees = numTrees;
         this.maxDepth = maxDepth;
         this.maxLeaves = maxLeaves;
+        this.seed = seed;
     }
 
     public void train(List<Map<String, Object>> trainingData) {
+        train(ColumnarDataset.fromRows(trainingData));
+    }
+
+    public void train(ColumnarDataset trainingData) {
+        if (binnedTraining) {
+            train(BinnedDataset.of(trainingData));
+        } else {
+            trainTrees(trainingData.getFeatureNames(), trainingData.labels(), trainingData::row,
+                (treeBuilder, weights) -> treeBuilder.buildTree(trainingData, weights, 0));
+        }
+        dataFingerprint = trainingData.fingerprint();
+        window = tail(trainingData, updateWindow);
+    }
+
+    // Trains on every row outside `holdout` without copying the data, so cross-validation folds
+    // share the dataset's cached sort orders. Held-out rows count as unlabelled for this forest,
+    // and with binned training they do not shape the bins either.
+    public void train(ColumnarDataset trainingData, BitSet holdout) {
+        int[] labels = trainingData.labels().clone();
+        int heldOut = 0;
+        for (int row = holdout.nextSetBit(0); row >= 0 && row < labels.length; row = holdout.nextSetBit(row + 1)) {
+            labels[row] = -1;
+            heldOut++;
+        }
+        if (binnedTraining) {
+            BinnedDataset binned = BinnedDataset.of(trainingData, holdout);
+            trainTrees(trainingData.getFeatureNames(), labels, binned::row,
+                (treeBuilder, weights) -> treeBuilder.buildTree(binned, weights, 0));
+        } else {
+            trainTrees(trainingData.getFeatureNames(), labels, trainingData::row,
+                (treeBuilder, weights) -> treeBuilder.buildTree(trainingData, weights, 0));
+        }
+        trainedRows = labels.length - heldOut; // the rows this forest actually learned from
+    }
+
+    // Trains straight from off-heap columns: only the one-byte bins and the labels are copied
+    // to the heap, so the raw data can exceed -Xmx (BinnedDataset gives the heap needed per row)
+    public void train(OffHeapDataset trainingData) {
+        train(BinnedDataset.of(trainingData));
+    }
+
+    // Histogram training on features quantized once up front (see BinnedDataset)
+    public void train(BinnedDataset trainingData) {
+        trainTrees(trainingData.getFeatureNames(), trainingData.labels(), trainingData::row,
+            (treeBuilder, weights) -> treeBuilder.buildTree(trainingData, weights, 0));
+    }
+
+    // Builds numTrees trees, each from its own bootstrap weights, and appends them in order.
+    // Each finished tree is scored on its out-of-bag rows right away.
+    private void trainTrees(String[] names, int[] labels, OutOfBagEstimate.Rows rows,
+                            BiFunction<DecisionTreeModel, int[], DecisionTreeNode> buildTree) {
+        boolean anyValid = false;
+        for (int i = 0; i < labels.length && !anyValid; i++) {
+            anyValid = labels[i] >= 0;
+        }
+        if (!anyValid) {
+            throw new IllegalStateException("No valid rows with 'Stress level' found during bootstrapping.");
+        }
+
+        BootstrapSample.Mode mode = bootstrapMode;
+        DecisionTreeNode[] built = new DecisionTreeNode[numTrees];
+        AtomicInteger completed = new AtomicInteger();
+        TrainingProgressListener listener = progressListener;
+        BitSet[] bags = new BitSet[numTrees];
+        OutOfBagEstimate estimate = outOfBagTracking ? new OutOfBagEstimate(labels, numClasses(labels)) : null;
+
+        List<Callable<Void>> tasks = new ArrayList<>();
         for (int i = 0; i < numTrees; i++) {
-            List<Map<String, Object>> bootstrapSample = bootstrap(trainingData);
-            DecisionTreeModel treeBuilder = new DecisionTreeModel(maxDepth, maxLeaves);
-            DecisionTreeNode root = treeBuilder.buildTree(bootstrapSample, 0);
-            trees.add(root);
+            final int treeIndex = i;
+            tasks.add(() -> {
+                // Each tree draws from its own seed, so results do not depend on scheduling.
+                // The sample lives only as row weights while this tree is being built.
+                long treeSeed = treeSeed(seed, treeIndex);
+                BootstrapSample sample = new BootstrapSample(treeSeed, mode);
+                int[] weights = sample.weights(labels);
+                long start = System.nanoTime();
+                built[treeIndex] = buildTree.apply(treeBuilder(names.length, treeSeed), weights);
+                PipelineMetrics.get().recordTree(System.nanoTime() - start, built[treeIndex]);
+
+                if (estimate != null) {
+                    BitSet bag = new BitSet(weights.length);
+                    for (int row = 0; row < weights.length; row++) {
+                        if (weights[row] > 0) bag.set(row);
+                    }
+                    bags[treeIndex] = bag;
+                    CompiledForest tree = CompiledForest.compile(List.of(built[treeIndex]), names);
+                    estimate.addTree(tree, 0, bag, rows);
+                }
 
-            // Progress bar
-            int percent = (int) ((i + 1) / (double) numTrees * 100);
-            System.out.print("\rTraining trees: [" +
-                "=".repeat(percent / 2) +
-                " ".repeat(50 - percent / 2) +
-                "] " + percent + "%");
+                int done = completed.incrementAndGet();
+                if (listener != null) listener.onTreeBuilt(done, numTrees);
+                return null;
+            });
         }
-        System.out.println("\nRandom Forest training complete.");
+
+        runAll(executor, tasks, "Tree training", IllegalStateException::new);
+        install(built, bags, estimate, names, labels.length);
     }
 
-    public int predict(Map<String, Object> input) {
-        Map<Integer, Integer> voteCounts = new HashMap<>();
+    // Trees firstIndex .. firstIndex + count - 1 of what train(data) would grow, without adding
+    // them to this forest; binned (from data) is used when given. Lets another process grow part
+    // of a forest (see ForestWorker).
+    DecisionTreeNode[] growTrees(ColumnarDataset data, BinnedDataset binned, int firstIndex, int count) {
+        int[] labels = data.labels();
+        BootstrapSample.Mode mode = bootstrapMode;
+        DecisionTreeNode[] built = new DecisionTreeNode[count];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final int slot = i;
+            tasks.add(() -> {
+                long treeSeed = treeSeed(seed, firstIndex + slot);
+                int[] weights = new BootstrapSample(treeSeed, mode).weights(labels);
+                DecisionTreeModel treeBuilder = treeBuilder(data.numFeatures(), treeSeed);
+                long start = System.nanoTime();
+                built[slot] = binned != null
+                    ? treeBuilder.buildTree(binned, weights, 0)
+                    : treeBuilder.buildTree(data, weights, 0);
+                PipelineMetrics.get().recordTree(System.nanoTime() - start, built[slot]);
+                return null;
+            });
+        }
+        runAll(executor, tasks, "Tree training", IllegalStateException::new);
+        return built;
+    }
 
-        for (DecisionTreeNode root : trees) {
-            DecisionTreeModel treeModel = new DecisionTreeModel(maxDepth, maxLeaves);
-            int prediction = treeModel.predict(root, input);
-            voteCounts.put(prediction, voteCounts.getOrDefault(prediction, 0) + 1);
+    // Trees grown elsewhere (see OutOfCoreTrainer, ForestCoordinator), appended like train() appends
+    void addTrees(DecisionTreeNode[] built, String[] names, long rows) {
+        install(built, new BitSet[built.length], null, names, rows);
+    }
+
+    private void install(DecisionTreeNode[] built, BitSet[] bags, OutOfBagEstimate estimate, String[] names, long rows) {
+        List<DecisionTreeNode> all = getTrees();
+        // In-bag sets only describe rows of the latest training data
+        inBag = new ArrayList<>(Collections.nCopies(all.size(), (BitSet) null));
+        all.addAll(Arrays.asList(built));
+        inBag.addAll(Arrays.asList(bags));
+
+        outOfBag = estimate;
+        featureNames = names;
+        trainedRows = rows;
+        dataFingerprint = 0;
+        compiled = CompiledForest.compile(trees, featureNames);
+
+        treeCorrect = new double[all.size()];
+        treeSeen = new double[all.size()];
+        nextTreeIndex = all.size();
+        window = null;
+        version++;
+    }
+
+    // Absorbs a batch of new labelled rows without retraining from scratch. Every tree is scored
+    // on the batch (new rows are unseen by all of them), the batch joins a sliding window of the
+    // most recent rows, and the trees with the worst recent accuracy are replaced by trees grown
+    // on that window. The cost depends on the batch and window sizes, not on the full history.
+    public void update(ColumnarDataset batch) {
+        if (featureNames.length == 0) {
+            throw new IllegalStateException("Train or load the forest before updating it.");
+        }
+        if (!Arrays.equals(batch.getFeatureNames(), featureNames)) {
+            throw new IllegalArgumentException("Batch features " + Arrays.toString(batch.getFeatureNames())
+                + " differ from the model's " + Arrays.toString(featureNames) + ".");
         }
 
-        return voteCounts.entrySet().stream()
-            .max(Map.Entry.comparingByValue())
-            .get()
-            .getKey();
+        List<DecisionTreeNode> all = getTrees();
+        if (treeSeen.length != all.size()) {
+            treeCorrect = Arrays.copyOf(treeCorrect, all.size());
+            treeSeen = Arrays.copyOf(treeSeen, all.size());
+        }
+        if (!scoreBatch(getCompiled(), batch)) return; // nothing labelled to learn from
+
+        window = tail(window == null ? batch : ColumnarDataset.concat(List.of(window, batch)), updateWindow);
+
+        // Worst recent accuracy first; ties replace the older position first
+        Integer[] order = new Integer[all.size()];
+        for (int t = 0; t < order.length; t++) order[t] = t;
+        Arrays.sort(order, Comparator.comparingDouble(t -> treeCorrect[t] / treeSeen[t]));
+        int replace = Math.min(all.size(), treesPerUpdate > 0 ? treesPerUpdate : Math.max(1, all.size() / 10));
+
+        ColumnarDataset data = window;
+        BinnedDataset binned = binnedTraining ? BinnedDataset.of(data) : null;
+        BootstrapSample.Mode mode = bootstrapMode;
+        DecisionTreeNode[] built = new DecisionTreeNode[replace];
+        int firstIndex = nextTreeIndex;
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int j = 0; j < replace; j++) {
+            final int slot = j;
+            tasks.add(() -> {
+                long treeSeed = treeSeed(seed, firstIndex + slot);
+                int[] weights = new BootstrapSample(treeSeed, mode).weights(data.labels());
+                DecisionTreeModel treeBuilder = treeBuilder(data.numFeatures(), treeSeed);
+                long start = System.nanoTime();
+                built[slot] = binned != null
+                    ? treeBuilder.buildTree(binned, weights, 0)
+                    : treeBuilder.buildTree(data, weights, 0);
+                PipelineMetrics.get().recordTree(System.nanoTime() - start, built[slot]);
+                return null;
+            });
+        }
+        runAll(executor, tasks, "Tree training", IllegalStateException::new);
+        nextTreeIndex += replace;
+
+        for (int j = 0; j < replace; j++) {
+            int t = order[j];
+            all.set(t, built[j]);
+            treeCorrect[t] = 0;
+            treeSeen[t] = 0;
+            if (inBag != null && t < inBag.size()) inBag.set(t, null);
+        }
+        compiled = CompiledForest.compile(all, featureNames);
+        dataFingerprint = 0; // no longer the forest of one dataset
+        version++;
     }
 
-    private List<Map<String, Object>> bootstrap(List<Map<String, Object>> data) {
-        List<Map<String, Object>> validData = data.stream()
-            .filter(r -> r.containsKey("Stress level") && r.get("Stress level") instanceof Integer)
-            .collect(Collectors.toList());
+    // Scores every tree and the whole forest on the batch's labelled rows; false if there are none
+    private boolean scoreBatch(CompiledForest forest, ColumnarDataset batch) {
+        int[] correct = new int[forest.numTrees()];
+        int labelled = 0;
+        int forestCorrect = 0;
+        double[] x = new double[featureNames.length];
+        for (int row = 0; row < batch.numRows(); row++) {
+            int label = batch.label(row);
+            if (label < 0) continue;
+            batch.row(row, x);
+            for (int t = 0; t < correct.length; t++) {
+                if (forest.predictTree(t, x) == label) correct[t]++;
+            }
+            if (forest.predict(x) == label) forestCorrect++;
+            labelled++;
+        }
+        if (labelled == 0) return false;
 
-        if (validData.isEmpty()) {
-            throw new IllegalStateException("No valid rows with 'Stress level' found during bootstrapping.");
+        for (int t = 0; t < correct.length; t++) {
+            treeCorrect[t] = treeCorrect[t] * SCORE_DECAY + correct[t];
+            treeSeen[t] = treeSeen[t] * SCORE_DECAY + labelled;
+        }
+        lastUpdateAccuracy = forestCorrect / (double) labelled;
+        return true;
+    }
+
+    // The last `rows` rows of data (all of it when smaller)
+    private static ColumnarDataset tail(ColumnarDataset data, int rows) {
+        int n = data.numRows();
+        if (n <= rows) return data;
+        int[] keep = new int[rows];
+        for (int i = 0; i < rows; i++) keep[i] = n - rows + i;
+        return data.select(keep);
+    }
+
+    private static int numClasses(int[] labels) {
+        int max = -1;
+        for (int label : labels) {
+            if (label > max) max = label;
+        }
+        return max + 1;
+    }
+
+    // Accuracy of the forest on the latest update batch, measured before the batch was absorbed
+    public double getLastUpdateAccuracy() {
+        return lastUpdateAccuracy;
+    }
+
+    // Out-of-bag accuracy of the latest train call; NaN when tracking was off or nothing was scored
+    public double getOutOfBagAccuracy() {
+        return outOfBag == null ? Double.NaN : outOfBag.accuracy();
+    }
+
+    // Drop in out-of-bag accuracy when one feature's values are shuffled across rows, for each
+    // feature in getFeatureNames() order. Features are scored in parallel on the executor;
+    // data must be the dataset this forest was trained on.
+    public double[] permutationImportance(ColumnarDataset data, long seed) {
+        CompiledForest forest = getCompiled();
+        if (inBag == null || inBag.size() != forest.numTrees() || !inBag.stream().anyMatch(Objects::nonNull)) {
+            throw new IllegalStateException("Permutation importance needs a forest trained with out-of-bag tracking.");
+        }
+        if (data.numRows() != outOfBag.numRows()) {
+            throw new IllegalArgumentException("Expected the " + outOfBag.numRows() + " training rows, got " + data.numRows() + ".");
         }
 
-        List<Map<String, Object>> sample = new ArrayList<>();
-        Random rand = new Random();
-        int size = data.size();
+        int[] source = new int[featureNames.length];
+        for (int f = 0; f < source.length; f++) source[f] = data.featureIndex(featureNames[f]);
+
+        double baseline = outOfBagAccuracy(forest, data, source, -1, null);
+        double[] importance = new double[featureNames.length];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int f = 0; f < featureNames.length; f++) {
+            final int feature = f;
+            if (source[f] < 0) continue;
+            tasks.add(() -> {
+                double[] permuted = data.column(source[feature]).clone();
+                Random rand = new Random(BootstrapSample.mix(seed + feature));
+                for (int i = permuted.length - 1; i > 0; i--) {
+                    int j = rand.nextInt(i + 1);
+                    double tmp = permuted[i];
+                    permuted[i] = permuted[j];
+                    permuted[j] = tmp;
+                }
+                importance[feature] = baseline - outOfBagAccuracy(forest, data, source, feature, permuted);
+                return null;
+            });
+        }
+        runAll(executor, tasks, "Permutation importance", IllegalStateException::new);
+        return importance;
+    }
+
+    // Out-of-bag accuracy of the whole forest, optionally with one feature's column replaced
+    private double outOfBagAccuracy(CompiledForest forest, ColumnarDataset data, int[] source,
+                                    int replaced, double[] replacement) {
+        OutOfBagEstimate estimate = new OutOfBagEstimate(data.labels(), data.numClasses());
+        OutOfBagEstimate.Rows rows = (row, out) -> {
+            for (int f = 0; f < source.length; f++) {
+                if (f == replaced) out[f] = replacement[row];
+                else out[f] = source[f] < 0 ? Double.NaN : data.value(row, source[f]);
+            }
+        };
+        for (int t = 0; t < forest.numTrees(); t++) {
+            if (inBag.get(t) != null) estimate.addTree(forest, t, inBag.get(t), rows);
+        }
+        return estimate.accuracy();
+    }
+
+    public void save(Path path) throws IOException {
+        ModelSnapshot.save(this, path);
+    }
+
+    public static RandomForestModel load(Path path) throws IOException {
+        return ModelSnapshot.load(path);
+    }
+
+    // Adopts a forest read from a snapshot; node objects are only rebuilt if getTrees() is called
+    void restore(CompiledForest compiled, long trainedRows, long dataFingerprint) {
+        this.compiled = compiled;
+        this.featureNames = compiled.getFeatureNames();
+        this.trainedRows = trainedRows;
+        this.dataFingerprint = dataFingerprint;
+        this.trees = null;
+        this.inBag = null;
+        this.outOfBag = null;
+        this.version++;
+    }
 
-        while (sample.size() < size) {
-            int index = rand.nextInt(validData.size());
-            sample.add(new HashMap<>(validData.get(index)));
+    // Runs the tasks on the executor, or inline when it has none, and rethrows an unchecked
+    // failure as is; anything else is wrapped, e.g. as "Grid search failed." for what "Grid search"
+    static <E extends Exception> void runAll(ExecutorService executor, List<Callable<Void>> tasks, String what,
+                                             BiFunction<String, Throwable, E> wrap) throws E {
+        try {
+            if (executor == null) {
+                for (Callable<Void> task : tasks) task.call();
+                return;
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw wrap.apply(what + " failed.", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw wrap.apply(what + " interrupted.", e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw wrap.apply(what + " failed.", e);
         }
+    }
+
+    // The tree's seed also picks the features each of its nodes searches. Large nodes fork into
+    // the forest's pool when it is a fork-join pool, so a few trees can still use every core.
+    DecisionTreeModel treeBuilder(int numFeatures, long treeSeed) {
+        DecisionTreeModel builder = new DecisionTreeModel(maxDepth, maxLeaves, resolveMtry(numFeatures), treeSeed);
+        builder.setForkJoinPool(executor instanceof ForkJoinPool ? (ForkJoinPool) executor : null);
+        return builder;
+    }
+
+    private int resolveMtry(int numFeatures) {
+        if (mtry > 0) return Math.min(mtry, numFeatures);
+        return Math.max(1, (int) Math.round(Math.sqrt(numFeatures)));
+    }
+
+    static long treeSeed(long forestSeed, int treeIndex) {
+        return BootstrapSample.mix(forestSeed + treeIndex * 0x9E3779B97F4A7C15L);
+    }
+
+    // Changes whenever training, an update or a restore replaces trees; caches key on it
+    public long getVersion() {
+        return version;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getNumTrees() {
+        return numTrees;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMaxLeaves() {
+        return maxLeaves;
+    }
+
+    public int getMtry() {
+        return mtry;
+    }
+
+    public BootstrapSample.Mode getBootstrapMode() {
+        return bootstrapMode;
+    }
+
+    public long getTrainedRows() {
+        return trainedRows;
+    }
+
+    // Fingerprint of the dataset the current trees were trained on as a whole (train(ColumnarDataset)
+    // or ForestCoordinator); 0 after any other kind of training or an update
+    public long getDataFingerprint() {
+        return dataFingerprint;
+    }
+
+    void setDataFingerprint(long dataFingerprint) {
+        this.dataFingerprint = dataFingerprint;
+    }
+
+    public int getUpdateWindow() {
+        return updateWindow;
+    }
+
+    public int getTreesPerUpdate() {
+        return treesPerUpdate;
+    }
+
+    public boolean isOutOfBagTracking() {
+        return outOfBagTracking;
+    }
+
+    public boolean isBinnedTraining() {
+        return binnedTraining;
+    }
 
-        return sample;
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public void setBootstrapMode(BootstrapSample.Mode bootstrapMode) {
+        this.bootstrapMode = bootstrapMode;
+    }
+
+    // Features searched at each split, drawn per node; 0 uses sqrt(#features)
+    public void setMtry(int mtry) {
+        this.mtry = Math.max(0, mtry);
+    }
+
+    // Quantize features to at most 255 bins and search splits on histograms
+    public void setBinnedTraining(boolean binnedTraining) {
+        this.binnedTraining = binnedTraining;
+    }
+
+    // Most recent rows kept for growing replacement trees in update()
+    public void setUpdateWindow(int updateWindow) {
+        this.updateWindow = Math.max(1, updateWindow);
+    }
+
+    // Trees replaced per update(); 0 replaces a tenth of the forest
+    public void setTreesPerUpdate(int treesPerUpdate) {
+        this.treesPerUpdate = Math.max(0, treesPerUpdate);
+    }
+
+    // Keep each tree's in-bag rows and score its out-of-bag rows as it finishes (on by default)
+    public void setOutOfBagTracking(boolean outOfBagTracking) {
+        this.outOfBagTracking = outOfBagTracking;
+    }
+
+    public void setProgressListener(TrainingProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public int predict(Map<String, Object> input) {
+        CompiledForest forest = getCompiled();
+        return forest.predict(forest.encode(input));
+    }
+
+    // Features in getFeatureNames() order; NaN marks a missing value
+    public int predict(double[] features) {
+        return getCompiled().predict(features);
+    }
+
+    // Vote share of each class, e.g. to act only on confident predictions
+    public double[] predictProba(Map<String, Object> input) {
+        CompiledForest forest = getCompiled();
+        return forest.predictProba(forest.encode(input));
+    }
+
+    public double[] predictProba(double[] features) {
+        return getCompiled().predictProba(features);
+    }
+
+    public void predictAll(double[][] rows, int[] out) {
+        getCompiled().predictAll(rows, out);
+    }
+
+    // Scores every row of an off-heap dataset into out
+    public void predictAll(OffHeapDataset data, int[] out) {
+        getCompiled().predictAll(data, out);
+    }
+
+    public String[] getFeatureNames() {
+        return featureNames;
+    }
+
+    public CompiledForest getCompiled() {
+        if (compiled == null || (trees != null && compiled.numTrees() != trees.size())) {
+            compiled = CompiledForest.compile(trees, featureNames);
+        }
+        return compiled;
     }
 
     public List<DecisionTreeNode> getTrees() {
+        if (trees == null) trees = new ArrayList<>(compiled.toTrees());
         return trees;
     }
 }
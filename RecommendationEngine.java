@@ -3,4 +3,5 @@ import java.util.Map;
 
 public interface RecommendationEngine {
     List<String> generateRecommendations(Map<String, Object> userInput, List<Map<String, Object>> dataset);
+    List<String> generateRecommendations(Map<String, Object> userInput, ColumnarDataset dataset);
 }
@@ -1,68 +1,231 @@
+import java.lang.ref.WeakReference;
 import java.util.*;
 
 public class RecommendationEngineImpl implements RecommendationEngine {
 
+    private final Map<ColumnarDataset, PeerIndex> peerIndexes = new WeakHashMap<>();
+    private final BoundedCache<List<String>> recommendationCache; // null = no caching
+
+    // Columnar copy of the last map dataset seen, so repeated calls with the same list reuse its
+    // peer index and cache entries. The rows must not change between calls, as with a ColumnarDataset.
+    private WeakReference<List<Map<String, Object>>> convertedRows = new WeakReference<>(null);
+    private int convertedSize;
+    private ColumnarDataset converted;
+
+    public RecommendationEngineImpl() {
+        this.recommendationCache = null;
+    }
+
+    // Caches recommendations for up to maxEntries distinct inputs, each for at most ttlMillis (0 = no limit)
+    public RecommendationEngineImpl(int maxEntries, long ttlMillis) {
+        this.recommendationCache = new BoundedCache<>(maxEntries, ttlMillis);
+    }
+
+    public BoundedCache<List<String>> getRecommendationCache() {
+        return recommendationCache;
+    }
+
+    // Map rows go through the same peer index, cache and metrics as a ColumnarDataset; peers are
+    // still compared on their original values, so non-numeric ones count as before
     @Override
     public List<String> generateRecommendations(Map<String, Object> userInput, List<Map<String, Object>> dataset) {
-        int userStress = (int) userInput.get("Stress level");
+        long start = System.nanoTime();
+        List<String> recs = cachedRecommend(userInput, columnar(dataset), dataset);
+        PipelineMetrics.get().recordRecommendation(System.nanoTime() - start);
+        return recs;
+    }
 
-        // Filter for users with better (lower) stress
-        List<Map<String, Object>> betterUsers = new ArrayList<>();
-        for (Map<String, Object> other : dataset) {
-            int otherStress = (int) other.get("Stress level");
-            if (otherStress < userStress) {
-                betterUsers.add(other);
-            }
+    @Override
+    public List<String> generateRecommendations(Map<String, Object> userInput, ColumnarDataset dataset) {
+        long start = System.nanoTime();
+        List<String> recs = cachedRecommend(userInput, dataset, null);
+        PipelineMetrics.get().recordRecommendation(System.nanoTime() - start);
+        return recs;
+    }
+
+    // Converted once per list (by identity), not on every call
+    private synchronized ColumnarDataset columnar(List<Map<String, Object>> rows) {
+        if (convertedRows.get() != rows || convertedSize != rows.size()) {
+            converted = ColumnarDataset.fromRows(rows);
+            convertedRows = new WeakReference<>(rows);
+            convertedSize = rows.size();
         }
+        return converted;
+    }
 
-        // If no better users found
-        if (betterUsers.isEmpty()) {
-            return List.of("You're already in the lowest stress group. Keep it up!");
+    private List<String> cachedRecommend(Map<String, Object> userInput, ColumnarDataset dataset, List<Map<String, Object>> rows) {
+        BoundedCache.Key key = recommendationCache == null ? null : cacheKey(userInput, dataset);
+        if (key == null) return recommend(userInput, dataset, rows);
+
+        // Datasets never change, so the dataset itself is the version
+        List<String> cached = recommendationCache.get(key, dataset, 0);
+        if (cached != null) return cached;
+        List<String> recs = Collections.unmodifiableList(new ArrayList<>(recommend(userInput, dataset, rows)));
+        recommendationCache.put(key, dataset, 0, recs);
+        return recs;
+    }
+
+    // Stress level followed by every dataset feature (NaN when absent). Inputs whose result also
+    // depends on other keys or on non-numeric values get no key and are never cached.
+    private static BoundedCache.Key cacheKey(Map<String, Object> userInput, ColumnarDataset dataset) {
+        double[] values = new double[dataset.numFeatures() + 1];
+        Arrays.fill(values, Double.NaN);
+        values[0] = (int) userInput.get("Stress level");
+        for (Map.Entry<String, Object> entry : userInput.entrySet()) {
+            if (entry.getKey().equals("Stress level") || entry.getValue() == null) continue;
+            int f = dataset.featureIndex(entry.getKey());
+            if (f < 0 || !(entry.getValue() instanceof Number)) return null;
+            double v = ((Number) entry.getValue()).doubleValue();
+            if (Double.isNaN(v)) return null;
+            values[f + 1] = v;
         }
+        return BoundedCache.Key.of(values);
+    }
 
-        // Find closest N users based on feature similarity
-        int k = 5;
-        PriorityQueue<Map.Entry<Map<String, Object>, Double>> pq = new PriorityQueue<>(
-            Map.Entry.comparingByValue()
-        );
+    // rows, when given, are the maps dataset was converted from
+    private List<String> recommend(Map<String, Object> userInput, ColumnarDataset dataset, List<Map<String, Object>> rows) {
+        int userStress = (int) userInput.get("Stress level");
 
-        for (Map<String, Object> other : betterUsers) {
-            double distance = computeDistance(userInput, other);
-            pq.offer(new AbstractMap.SimpleEntry<>(other, distance));
+        // User features resolved against the dataset schema once
+        List<String> keys = new ArrayList<>();
+        for (String key : userInput.keySet()) {
+            if (!key.equals("Stress level")) keys.add(key);
+        }
+        int[] featureIdx = new int[keys.size()];
+        double[] userVals = new double[keys.size()];
+        for (int j = 0; j < keys.size(); j++) {
+            Object val = userInput.get(keys.get(j));
+            featureIdx[j] = dataset.featureIndex(keys.get(j));
+            userVals[j] = (val instanceof Number) ? ((Number) val).doubleValue() : Double.NaN;
         }
 
-        // Select top k
-        List<Map<String, Object>> topK = new ArrayList<>();
-        for (int i = 0; i < k && !pq.isEmpty(); i++) {
-            topK.add(pq.poll().getKey());
+        // Closest better (lower stress) users from the per-class peer index
+        PeerIndex index = indexFor(dataset);
+        if (!index.hasClassBelow(userStress)) {
+            return List.of("You're already in the lowest stress group. Keep it up!");
         }
 
+        double[] query = new double[dataset.numFeatures()];
+        double[] weights = new double[dataset.numFeatures()];
+        for (int j = 0; j < featureIdx.length; j++) {
+            if (featureIdx[j] < 0 || Double.isNaN(userVals[j])) continue;
+            query[featureIdx[j]] = index.normalize(featureIdx[j], userVals[j]);
+            weights[featureIdx[j]] = 1.0;
+        }
+        int[] topK = index.nearestBelow(userStress, query, weights, 5);
+        int found = topK.length;
+
         // Analyze differences
         Map<String, Integer> recommendationCounts = new HashMap<>();
 
-        for (Map<String, Object> peer : topK) {
-            for (String key : userInput.keySet()) {
-                if (key.equals("Stress level")) continue;
-        
-                Object userVal = userInput.get(key);
-                Object peerVal = peer.get(key);
-        
-                if (userVal instanceof Number && peerVal instanceof Number) {
-                    double uv = ((Number) userVal).doubleValue();
-                    double pv = ((Number) peerVal).doubleValue();
-                    if (Math.abs(uv - pv) > 1.0) {
-                        if (!(userStress == 1 && key.equals("Age"))) {
-                            recommendationCounts.put(key, recommendationCounts.getOrDefault(key, 0) + 1);
-                        }
-                    }
-                } else if (!Objects.equals(userVal, peerVal)) {
-                    if (!(userStress == 1 && key.equals("Age"))) {
-                        recommendationCounts.put(key, recommendationCounts.getOrDefault(key, 0) + 1);
+        for (int i = 0; i < found; i++) {
+            for (int j = 0; j < keys.size(); j++) {
+                String key = keys.get(j);
+                if (userStress == 1 && key.equals("Age")) continue;
+
+                Object peerVal;
+                if (rows != null) {
+                    peerVal = rows.get(topK[i]).get(key);
+                } else {
+                    double v = featureIdx[j] < 0 ? Double.NaN : dataset.value(topK[i], featureIdx[j]);
+                    peerVal = Double.isNaN(v) ? null : (Object) v;
+                }
+                if (differs(userInput.get(key), peerVal)) {
+                    recommendationCounts.put(key, recommendationCounts.getOrDefault(key, 0) + 1);
+                }
+            }
+        }
+
+        return summarize(recommendationCounts);
+    }
+
+    // Numbers differ by more than 1.0; anything else differs unless equal
+    private static boolean differs(Object userVal, Object peerVal) {
+        if (userVal instanceof Number && peerVal instanceof Number) {
+            return Math.abs(((Number) userVal).doubleValue() - ((Number) peerVal).doubleValue()) > 1.0;
+        }
+        return !Objects.equals(userVal, peerVal);
+    }
+
+    private PeerIndex indexFor(ColumnarDataset dataset) {
+        synchronized (peerIndexes) {
+            return peerIndexes.computeIfAbsent(dataset, PeerIndex::new);
+        }
+    }
+
+    // One k-d tree per stress class over min-max normalized feature vectors, built once per dataset
+    private static final class PeerIndex {
+        private final double[] min;
+        private final double[] scale;
+        private final KdTree[] byClass;
+
+        PeerIndex(ColumnarDataset data) {
+            int dims = data.numFeatures();
+            min = new double[dims];
+            scale = new double[dims];
+            double[] mean = new double[dims];
+            for (int f = 0; f < dims; f++) {
+                double lo = Double.MAX_VALUE, hi = -Double.MAX_VALUE, sum = 0;
+                int count = 0;
+                for (double v : data.column(f)) {
+                    if (Double.isNaN(v)) continue;
+                    lo = Math.min(lo, v);
+                    hi = Math.max(hi, v);
+                    sum += v;
+                    count++;
+                }
+                min[f] = count == 0 ? 0 : lo;
+                scale[f] = (count == 0 || hi == lo) ? 1.0 : 1.0 / (hi - lo);
+                mean[f] = count == 0 ? 0 : (sum / count - min[f]) * scale[f];
+            }
+
+            int numClasses = Math.max(data.numClasses(), 0);
+            int[] sizes = new int[numClasses];
+            for (int row = 0; row < data.numRows(); row++) {
+                if (data.label(row) >= 0) sizes[data.label(row)]++;
+            }
+
+            byClass = new KdTree[numClasses];
+            for (int c = 0; c < numClasses; c++) {
+                double[] points = new double[sizes[c] * dims];
+                int[] ids = new int[sizes[c]];
+                int k = 0;
+                for (int row = 0; row < data.numRows(); row++) {
+                    if (data.label(row) != c) continue;
+                    ids[k] = row;
+                    for (int f = 0; f < dims; f++) {
+                        double v = data.value(row, f);
+                        // Missing values sit at the feature mean so they neither attract nor repel
+                        points[k * dims + f] = Double.isNaN(v) ? mean[f] : normalize(f, v);
                     }
+                    k++;
                 }
+                byClass[c] = new KdTree(points, ids, dims);
+            }
+        }
+
+        double normalize(int feature, double value) {
+            return (value - min[feature]) * scale[feature];
+        }
+
+        boolean hasClassBelow(int stress) {
+            for (int c = 0; c < Math.min(stress, byClass.length); c++) {
+                if (byClass[c].size() > 0) return true;
+            }
+            return false;
+        }
+
+        // Exact k nearest rows over every class below the given stress level, nearest first
+        int[] nearestBelow(int stress, double[] query, double[] weights, int k) {
+            KdTree.Neighbors result = new KdTree.Neighbors(k);
+            for (int c = 0; c < Math.min(stress, byClass.length); c++) {
+                byClass[c].search(query, weights, result);
             }
+            return result.sortedIds();
         }
+    }
 
+    private List<String> summarize(Map<String, Integer> recommendationCounts) {
         // Sort most common differing features
         List<String> recommendations = new ArrayList<>();
         recommendationCounts.entrySet().stream()
@@ -76,17 +239,4 @@ public class RecommendationEngineImpl implements RecommendationEngine {
 
         return recommendations;
     }
-
-    private double computeDistance(Map<String, Object> a, Map<String, Object> b) {
-        double sum = 0.0;
-        for (String key : a.keySet()) {
-            if (key.equals("Stress level")) continue;
-            if (a.get(key) instanceof Number && b.get(key) instanceof Number) {
-                double valA = ((Number) a.get(key)).doubleValue();
-                double valB = ((Number) b.get(key)).doubleValue();
-                sum += Math.pow(valA - valB, 2);
-            }
-        }
-        return Math.sqrt(sum);
-    }
 }
@@ -4,5 +4,11 @@ import java.util.Map;
 public interface StressPredictor {
     DecisionTreeNode createDecisionTree(List<Map<String, Object>> trainingData, int maxDepth, int maxLeaves);
     RandomForestModel createRandomForest(List<Map<String, Object>> trainingData, int numTrees, int maxDepth, int maxLeaves);
+    DecisionTreeNode createDecisionTree(ColumnarDataset trainingData, int maxDepth, int maxLeaves);
+    RandomForestModel createRandomForest(ColumnarDataset trainingData, int numTrees, int maxDepth, int maxLeaves);
+    // mtry = features searched at each split; 0 uses sqrt(#features), as the overloads above do
+    RandomForestModel createRandomForest(List<Map<String, Object>> trainingData, int numTrees, int maxDepth, int maxLeaves, int mtry);
+    RandomForestModel createRandomForest(ColumnarDataset trainingData, int numTrees, int maxDepth, int maxLeaves, int mtry);
+    void updateRandomForest(RandomForestModel forest, ColumnarDataset newData);
     int predictStressLevel(RandomForestModel forest, Map<String, Object> userInput);
 }
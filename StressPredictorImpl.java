@@ -3,6 +3,21 @@ import java.util.Map;
 
 public class StressPredictorImpl implements StressPredictor {
 
+    private final BoundedCache<Integer> predictionCache; // null = no caching
+
+    public StressPredictorImpl() {
+        this.predictionCache = null;
+    }
+
+    // Caches predictions for up to maxEntries distinct inputs, each for at most ttlMillis (0 = no limit)
+    public StressPredictorImpl(int maxEntries, long ttlMillis) {
+        this.predictionCache = new BoundedCache<>(maxEntries, ttlMillis);
+    }
+
+    public BoundedCache<Integer> getPredictionCache() {
+        return predictionCache;
+    }
+
     @Override
     public DecisionTreeNode createDecisionTree(List<Map<String, Object>> trainingData, int maxDepth, int maxLeaves) {
         DecisionTreeModel dt = new DecisionTreeModel(maxDepth, maxLeaves);
@@ -11,13 +26,59 @@ public class StressPredictorImpl implements StressPredictor {
 
     @Override
     public RandomForestModel createRandomForest(List<Map<String, Object>> trainingData, int numTrees, int maxDepth, int maxLeaves) {
+        return createRandomForest(trainingData, numTrees, maxDepth, maxLeaves, 0);
+    }
+
+    @Override
+    public RandomForestModel createRandomForest(List<Map<String, Object>> trainingData, int numTrees, int maxDepth, int maxLeaves, int mtry) {
+        return createRandomForest(ColumnarDataset.fromRows(trainingData), numTrees, maxDepth, maxLeaves, mtry);
+    }
+
+    @Override
+    public DecisionTreeNode createDecisionTree(ColumnarDataset trainingData, int maxDepth, int maxLeaves) {
+        DecisionTreeModel dt = new DecisionTreeModel(maxDepth, maxLeaves);
+        return dt.buildTree(trainingData, 0);
+    }
+
+    @Override
+    public RandomForestModel createRandomForest(ColumnarDataset trainingData, int numTrees, int maxDepth, int maxLeaves) {
+        return createRandomForest(trainingData, numTrees, maxDepth, maxLeaves, 0);
+    }
+
+    @Override
+    public RandomForestModel createRandomForest(ColumnarDataset trainingData, int numTrees, int maxDepth, int maxLeaves, int mtry) {
         RandomForestModel forest = new RandomForestModel(numTrees, maxDepth, maxLeaves);
+        forest.setMtry(mtry);
         forest.train(trainingData);
         return forest;
     }
 
+    @Override
+    public void updateRandomForest(RandomForestModel forest, ColumnarDataset newData) {
+        forest.update(newData);
+    }
+
     @Override
     public int predictStressLevel(RandomForestModel forest, Map<String, Object> userInput) {
-        return forest.predict(userInput);
+        long start = System.nanoTime();
+        int predicted = predict(forest, userInput);
+        PipelineMetrics.get().recordPrediction(System.nanoTime() - start);
+        return predicted;
+    }
+
+    private int predict(RandomForestModel forest, Map<String, Object> userInput) {
+        if (predictionCache == null) return forest.predict(userInput);
+
+        // Version first: a concurrent update can then only leave an entry that never matches again
+        long version = forest.getVersion();
+        CompiledForest compiled = forest.getCompiled();
+        double[] features = compiled.encode(userInput);
+        BoundedCache.Key key = BoundedCache.Key.of(features);
+
+        Integer cached = predictionCache.get(key, forest, version);
+        if (cached != null) return cached;
+        int predicted = compiled.predict(features);
+        predictionCache.put(key, forest, version, predicted);
+        return predicted;
     }
 }
@@ -1,10 +1,36 @@
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 public class TestUnit {
     public static void main(String[] args) {
         testDataProcessor();
         testStressPredictor();
         testRecommendationEngine();
+        testRecommendationOverloads();
+        testColumnarDataset();
+        testBestSplit();
+        testForestReproducibility();
+        testCompiledForest();
+        testMappedCsvLoader();
+        testBootstrapWeights();
+        testModelSnapshot();
+        testKdTree();
+        testPredictionBatcher();
+        testBulkScorer();
+        testBinnedTraining();
+        testOutOfBagEvaluation();
+        testForestUpdate();
+        testBoundedCache();
+        testPipelineMetrics();
+        testEarlyStopVoting();
+        testDatasetStatistics();
+        testGridSearch();
+        testMaxLeaves();
+        testMtry();
+        testParallelTreeGrowth();
+        testOffHeapDataset();
+        testOutOfCoreTraining();
+        testDistributedTraining();
         System.out.println("\nAll unit tests completed.");
     }
 
@@ -24,14 +50,15 @@ public class TestUnit {
         System.out.println("Expected: True, Evaluating: filtered.size() == 1");
         assert filtered.size() == 1 : "Filtered row missing";
 
-        System.out.println("Expected: True, Evaluating: filtered.get(0).get(\"Stress level\").equals(2)");
-        assert filtered.get(0).get("Stress level").equals(2) : "Incorrect stress level category";
+        // filterData maps stress 1-5 to 0 and 6-10 to 1, and keeps only SELECTED_FEATURES
+        System.out.println("Expected: True, Evaluating: filtered.get(0).get(\"Stress level\").equals(1)");
+        assert filtered.get(0).get("Stress level").equals(1) : "Incorrect stress level category";
 
-        System.out.println("Expected: True, Evaluating: filtered.get(0).get(\"Gender\").equals(0)");
-        assert filtered.get(0).get("Gender").equals(0) : "Gender conversion failed";
+        System.out.println("Expected: True, Evaluating: !filtered.get(0).containsKey(\"Gender\")");
+        assert !filtered.get(0).containsKey("Gender") : "Unselected Gender column kept";
 
-        System.out.println("Expected: True, Evaluating: filtered.get(0).get(\"Occupation\").equals(0)");
-        assert filtered.get(0).get("Occupation").equals(0) : "Occupation conversion failed";
+        System.out.println("Expected: True, Evaluating: !filtered.get(0).containsKey(\"Occupation\")");
+        assert !filtered.get(0).containsKey("Occupation") : "Unselected Occupation column kept";
 
         System.out.println("✅ DataProcessorImpl passed.");
     }
@@ -96,4 +123,1488 @@ public class TestUnit {
 
         System.out.println("✅ RecommendationEngineImpl passed.");
     }
+
+    public static void testRecommendationOverloads() {
+        System.out.println("Testing recommendation overloads...");
+        RecommendationEngineImpl re = new RecommendationEngineImpl();
+
+        Random rand = new Random(8);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("Stress level", 1 + rand.nextInt(10));
+            row.put("Age", 18 + rand.nextInt(50));
+            if (i % 7 != 0) row.put("SleepHours", rand.nextDouble() * 10);
+            row.put("Caffeine intake", rand.nextInt(500));
+            rows.add(row);
+        }
+        ColumnarDataset data = ColumnarDataset.fromRows(rows);
+
+        System.out.println("Expected: True, Evaluating: map rows and columns give the same recommendations");
+        for (int i = 0; i < 20; i++) {
+            Map<String, Object> user = new HashMap<>(rows.get(i * 13));
+            user.put("SleepHours", rand.nextDouble() * 10);
+            assert re.generateRecommendations(user, rows).equals(re.generateRecommendations(user, data))
+                : "Overloads differ for " + user;
+        }
+
+        // Non-numeric values are compared as values: a shared one is never worth adjusting
+        for (Map<String, Object> row : rows) row.put("Gender", "Female");
+        Map<String, Object> female = new HashMap<>(rows.get(5));
+        female.put("Stress level", 10);
+        Map<String, Object> male = new HashMap<>(female);
+        male.put("Gender", "Male");
+        System.out.println("Expected: True, Evaluating: equal non-numeric values do not count as differences");
+        assert !re.generateRecommendations(female, rows).contains("Consider adjusting: Gender")
+            && re.generateRecommendations(male, rows).contains("Consider adjusting: Gender") : "Gender compared wrongly";
+
+        RecommendationEngineImpl cached = new RecommendationEngineImpl(16, 0);
+        Map<String, Object> numeric = new HashMap<>(female);
+        numeric.remove("Gender");
+        cached.generateRecommendations(numeric, rows);
+        cached.generateRecommendations(numeric, rows);
+        System.out.println("Expected: True, Evaluating: repeated calls with the same list hit the cache");
+        assert cached.getRecommendationCache().hits() == 1 : cached.getRecommendationCache();
+
+        System.out.println("✅ Recommendation overloads passed.");
+    }
+
+    public static void testColumnarDataset() {
+        System.out.println("Testing ColumnarDataset...");
+
+        List<Map<String, Object>> raw = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("Caffeine intake", 100 + i);
+            row.put("SleepHours", 6.5);
+            row.put("Gender", "Male");
+            row.put("Stress level", 3 + 2 * i);
+            raw.add(row);
+        }
+
+        ColumnarDataset columns = ColumnarDataset.fromRows(raw);
+
+        System.out.println("Expected: True, Evaluating: columns.numFeatures() == 2");
+        assert columns.numFeatures() == 2 : "Non-numeric column should be dropped";
+
+        DataProcessorImpl dp = new DataProcessorImpl();
+        ColumnarDataset filtered = dp.filterData(columns);
+
+        System.out.println("Expected: True, Evaluating: filtered.label(0) == 0 && filtered.label(3) == 1");
+        assert filtered.label(0) == 0 && filtered.label(3) == 1 : "Incorrect binary stress level";
+
+        int caffeine = filtered.featureIndex("Caffeine intake");
+        System.out.println("Expected: True, Evaluating: filtered.value(2, caffeine) == 102");
+        assert filtered.value(2, caffeine) == 102 : "Column value mismatch";
+
+        System.out.println("Expected: True, Evaluating: filtered.toRowMap(1).get(\"Caffeine intake\").equals(101)");
+        assert filtered.toRowMap(1).get("Caffeine intake").equals(101) : "Integral column should map back to Integer";
+
+        double[] encoded = filtered.encode(Map.of("Caffeine intake", 150, "Gender", "Male"));
+        System.out.println("Expected: True, Evaluating: encode places values by name and leaves the rest NaN");
+        assert encoded.length == filtered.numFeatures() && encoded[caffeine] == 150
+            && Double.isNaN(encoded[filtered.featureIndex("SleepHours")]) : "Encoding mismatch";
+
+        System.out.println("✅ ColumnarDataset passed.");
+    }
+
+    public static void testBestSplit() {
+        System.out.println("Testing best split search...");
+
+        Random rand = new Random(2);
+        String[] names = {"SleepHours", "Age", "Heart Rate", "Caffeine intake"};
+        for (int trial = 0; trial < 200; trial++) {
+            // Few distinct values, a duplicated column and missing values, so ties are everywhere
+            int n = 5 + rand.nextInt(30);
+            double[][] columns = new double[names.length][n];
+            int[] labels = new int[n];
+            for (int row = 0; row < n; row++) {
+                for (int f = 0; f < 3; f++) columns[f][row] = rand.nextInt(6) == 0 ? Double.NaN : rand.nextInt(4);
+                columns[3][row] = columns[1][row];
+                labels[row] = rand.nextInt(7) == 0 ? -1 : rand.nextInt(3);
+            }
+            ColumnarDataset data = new ColumnarDataset(names, columns, new boolean[names.length], labels);
+
+            // Brute force: every midpoint of every feature; missing values go right
+            int[] rank = DecisionTreeModel.tieRanks(names);
+            String bestFeature = null;
+            double bestThreshold = 0;
+            double bestScore = Double.MAX_VALUE;
+            int bestRank = Integer.MAX_VALUE;
+            for (int f = 0; f < names.length; f++) {
+                TreeSet<Double> values = new TreeSet<>();
+                for (int row = 0; row < n; row++) {
+                    if (labels[row] >= 0 && !Double.isNaN(columns[f][row])) values.add(columns[f][row]);
+                }
+                Double previous = null;
+                for (double v : values) {
+                    if (previous != null) {
+                        double threshold = (previous + v) / 2.0;
+                        double score = bruteForceGini(columns[f], labels, threshold);
+                        if (score < bestScore || (score == bestScore && rank[f] < bestRank)) {
+                            bestScore = score;
+                            bestFeature = names[f];
+                            bestThreshold = threshold;
+                            bestRank = rank[f];
+                        }
+                    }
+                    previous = v;
+                }
+            }
+
+            DecisionTreeNode sorted = new DecisionTreeModel(1, 0).buildTree(data, 0);
+            DecisionTreeNode binned = new DecisionTreeModel(1, 0).buildTree(BinnedDataset.of(data), null, 0);
+            for (DecisionTreeNode root : new DecisionTreeNode[] {sorted, binned}) {
+                boolean pure = true;
+                int first = -1;
+                for (int label : labels) {
+                    if (label < 0) continue;
+                    if (first < 0) first = label;
+                    pure &= label == first;
+                }
+                if (pure || bestFeature == null) {
+                    assert root.isLeaf() : "Trial " + trial + ": unexpected split";
+                } else {
+                    assert !root.isLeaf() && root.split_feature.equals(bestFeature) && root.threshold == bestThreshold
+                        : "Trial " + trial + ": " + root.split_feature + " <= " + root.threshold
+                          + ", brute force " + bestFeature + " <= " + bestThreshold;
+                }
+            }
+        }
+        System.out.println("Expected: True, Evaluating: sweep and histogram splits equal a brute-force Gini scan");
+
+        System.out.println("✅ Best split passed.");
+    }
+
+    // Weighted Gini of splitting labelled rows at value <= threshold, classes summed in label order
+    private static double bruteForceGini(double[] column, int[] labels, double threshold) {
+        int[] left = new int[3];
+        int[] right = new int[3];
+        int nLeft = 0;
+        int nRight = 0;
+        for (int row = 0; row < labels.length; row++) {
+            if (labels[row] < 0) continue;
+            if (column[row] <= threshold) {
+                left[labels[row]]++;
+                nLeft++;
+            } else {
+                right[labels[row]]++;
+                nRight++;
+            }
+        }
+        int n = nLeft + nRight;
+        double giniLeft = 1.0;
+        double giniRight = 1.0;
+        for (int c = 0; c < 3; c++) {
+            double pl = (double) left[c] / nLeft;
+            double pr = (double) right[c] / nRight;
+            giniLeft -= pl * pl;
+            giniRight -= pr * pr;
+        }
+        return ((double) nLeft / n) * giniLeft + ((double) nRight / n) * giniRight;
+    }
+
+    public static void testForestReproducibility() {
+        System.out.println("Testing RandomForestModel seeding...");
+
+        Random rand = new Random(7);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("Heart Rate", 60 + rand.nextInt(100));
+            row.put("SleepHours", 4 + rand.nextDouble() * 5);
+            row.put("Stress level", rand.nextInt(2));
+            rows.add(row);
+        }
+        ColumnarDataset data = ColumnarDataset.fromRows(rows);
+
+        RandomForestModel sequential = new RandomForestModel(8, 6, 30, 42L);
+        sequential.setExecutor(null);
+        sequential.setProgressListener(null);
+        sequential.train(data);
+
+        java.util.concurrent.ExecutorService pool = java.util.concurrent.Executors.newFixedThreadPool(4);
+        RandomForestModel parallel = new RandomForestModel(8, 6, 30, 42L);
+        parallel.setExecutor(pool);
+        parallel.setProgressListener(null);
+        parallel.train(data);
+        pool.shutdown();
+
+        boolean same = true;
+        for (Map<String, Object> row : rows) {
+            if (sequential.predict(row) != parallel.predict(row)) same = false;
+        }
+        for (int t = 0; t < 8; t++) {
+            DecisionTreeNode a = sequential.getTrees().get(t);
+            DecisionTreeNode b = parallel.getTrees().get(t);
+            if (!Objects.equals(a.split_feature, b.split_feature) || a.threshold != b.threshold) same = false;
+        }
+
+        System.out.println("Expected: True, Evaluating: same seed gives the same forest on 1 and 4 threads");
+        assert same : "Forest depends on thread count";
+
+        System.out.println("✅ RandomForestModel seeding passed.");
+    }
+
+    public static void testCompiledForest() {
+        System.out.println("Testing CompiledForest...");
+
+        Random rand = new Random(11);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("Caffeine intake", rand.nextInt(500));
+            row.put("Age", 18 + rand.nextInt(50));
+            row.put("Stress level", rand.nextInt(3));
+            rows.add(row);
+        }
+
+        RandomForestModel forest = new RandomForestModel(9, 5, 30, 3L);
+        forest.setProgressListener(null);
+        forest.train(rows);
+
+        DecisionTreeModel treeModel = new DecisionTreeModel(5, 30);
+        double[][] encoded = new double[rows.size()][];
+        boolean matches = true;
+        for (int i = 0; i < rows.size(); i++) {
+            int[] votes = new int[3];
+            for (DecisionTreeNode root : forest.getTrees()) {
+                votes[treeModel.predict(root, rows.get(i))]++;
+            }
+            int expected = DecisionTreeModel.argMax(votes);
+            if (forest.predict(rows.get(i)) != expected) matches = false;
+            encoded[i] = forest.getCompiled().encode(rows.get(i));
+        }
+
+        System.out.println("Expected: True, Evaluating: compiled votes match tree-by-tree votes");
+        assert matches : "Compiled forest disagrees with the node graph";
+
+        int[] batch = new int[rows.size()];
+        forest.predictAll(encoded, batch);
+        boolean batchMatches = true;
+        for (int i = 0; i < rows.size(); i++) {
+            if (batch[i] != forest.predict(encoded[i])) batchMatches = false;
+        }
+
+        System.out.println("Expected: True, Evaluating: predictAll agrees with predict");
+        assert batchMatches : "Batch scoring differs from single-row scoring";
+
+        System.out.println("✅ CompiledForest passed.");
+    }
+
+    public static void testMappedCsvLoader() {
+        System.out.println("Testing MappedCsvLoader...");
+
+        ColumnarDataset data;
+        try {
+            java.nio.file.Path file = java.nio.file.Files.createTempFile("loader", ".csv");
+            java.nio.file.Files.writeString(file,
+                "SleepHours,Stress level,Smoking\r\n 6.5 ,4,Yes\r\n\r\n-2e1,high,no\n7,,");
+            data = new MappedCsvLoader().load(file);
+            java.nio.file.Files.delete(file);
+        } catch (java.io.IOException e) {
+            throw new AssertionError("Loader failed: " + e.getMessage());
+        }
+
+        System.out.println("Expected: True, Evaluating: data.numRows() == 3");
+        assert data.numRows() == 3 : "Blank line should be skipped";
+
+        int sleep = data.featureIndex("SleepHours");
+        int smoking = data.featureIndex("Smoking");
+        System.out.println("Expected: True, Evaluating: data.value(0, sleep) == 6.5 && data.value(1, sleep) == -20");
+        assert data.value(0, sleep) == 6.5 && data.value(1, sleep) == -20 : "Numeric cell parsed incorrectly";
+
+        System.out.println("Expected: True, Evaluating: data.value(0, smoking) == 1 && data.value(1, smoking) == 0");
+        assert data.value(0, smoking) == 1 && data.value(1, smoking) == 0 : "Yes/No conversion failed";
+
+        System.out.println("Expected: True, Evaluating: data.label(0) == 4 && data.label(1) == -1 && data.label(2) == -1");
+        assert data.label(0) == 4 && data.label(1) == -1 && data.label(2) == -1 : "Label column parsed incorrectly";
+
+        System.out.println("✅ MappedCsvLoader passed.");
+    }
+
+    public static void testBootstrapWeights() {
+        System.out.println("Testing BootstrapSample...");
+
+        Random rand = new Random(5);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("Heart Rate", 60 + rand.nextInt(100));
+            row.put("Therapy Session", rand.nextInt(8));
+            row.put("Stress level", rand.nextInt(2));
+            rows.add(row);
+        }
+        ColumnarDataset data = ColumnarDataset.fromRows(rows);
+
+        // Weighted training must match training on the materialized copies
+        int[] weights = new BootstrapSample(17L, BootstrapSample.Mode.MULTINOMIAL).weights(data);
+        int total = 0;
+        for (int w : weights) total += w;
+        int[] copyRows = new int[total];
+        int k = 0;
+        for (int row = 0; row < weights.length; row++) {
+            for (int j = 0; j < weights[row]; j++) copyRows[k++] = row;
+        }
+
+        DecisionTreeModel model = new DecisionTreeModel(6, 100);
+        DecisionTreeNode weighted = model.buildTree(data, weights, 0);
+        DecisionTreeNode copied = model.buildTree(data.select(copyRows), 0);
+        boolean same = true;
+        for (Map<String, Object> row : rows) {
+            if (model.predict(weighted, row) != model.predict(copied, row)) same = false;
+        }
+
+        System.out.println("Expected: True, Evaluating: total == rows.size() && weighted tree == copied tree");
+        assert total == rows.size() && same : "Weighted bootstrap differs from row copies";
+
+        BootstrapSample poisson = new BootstrapSample(9L, BootstrapSample.Mode.POISSON);
+        int[] first = poisson.weights(data);
+        int[] second = poisson.weights(data);
+        long sum = 0;
+        for (int row = 0; row < first.length; row++) sum += first[row];
+
+        System.out.println("Expected: True, Evaluating: Poisson weights are repeatable and average about 1");
+        assert Arrays.equals(first, second) && sum > 300 && sum < 500 : "Poisson weights look wrong";
+
+        // Unlabelled rows get no weight and add no draws
+        int[] labels = data.labels().clone();
+        for (int row = 0; row < labels.length; row += 4) labels[row] = -1;
+        int[] partial = new BootstrapSample(17L, BootstrapSample.Mode.MULTINOMIAL).weights(labels);
+        int drawn = 0;
+        boolean unlabelledEmpty = true;
+        for (int row = 0; row < partial.length; row++) {
+            drawn += partial[row];
+            if (labels[row] < 0 && partial[row] != 0) unlabelledEmpty = false;
+        }
+        System.out.println("Expected: True, Evaluating: a multinomial sample draws once per labelled row");
+        assert drawn == 300 && unlabelledEmpty : drawn + " draws for 300 labelled rows";
+
+        // The processor derives its samples from the seed it is given
+        DataProcessorImpl processor = new DataProcessorImpl();
+        List<BootstrapSample> once = processor.bootstrapData(data, 3, BootstrapSample.Mode.POISSON, 42L);
+        List<BootstrapSample> again = processor.bootstrapData(data, 3, BootstrapSample.Mode.POISSON, 42L);
+        boolean repeatable = once.size() == 3;
+        for (int i = 0; i < once.size(); i++) {
+            if (once.get(i).getSeed() != again.get(i).getSeed()) repeatable = false;
+        }
+        System.out.println("Expected: True, Evaluating: bootstrapData with the same seed gives the same samples");
+        assert repeatable : "Seeded bootstrap samples differ";
+
+        // Row samples are copies, so editing one never touches the training rows
+        List<List<Map<String, Object>>> copies = processor.bootstrapData(rows, 1);
+        copies.get(0).get(0).put("Stress level", 99);
+        boolean untouched = true;
+        for (Map<String, Object> row : rows) {
+            if (Integer.valueOf(99).equals(row.get("Stress level"))) untouched = false;
+        }
+        System.out.println("Expected: True, Evaluating: bootstrapped rows are copies of the training rows");
+        assert untouched : "A bootstrapped row is shared with the training data";
+
+        System.out.println("✅ BootstrapSample passed.");
+    }
+
+    public static void testModelSnapshot() {
+        System.out.println("Testing ModelSnapshot...");
+
+        Random rand = new Random(21);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("Breathing Rate", 10 + rand.nextInt(30));
+            row.put("Diet Quality", 1 + rand.nextInt(10));
+            row.put("Stress level", rand.nextInt(2));
+            rows.add(row);
+        }
+
+        RandomForestModel forest = new RandomForestModel(6, 5, 30, 77L);
+        forest.setProgressListener(null);
+        forest.setMtry(1);
+        forest.setBinnedTraining(true);
+        forest.train(rows);
+
+        RandomForestModel loaded;
+        int rejected = 0;
+        try {
+            java.nio.file.Path file = java.nio.file.Files.createTempFile("forest", ".bin");
+            forest.save(file);
+            forest.save(file); // replaces the previous snapshot
+            loaded = RandomForestModel.load(file);
+
+            // Corrupt copies: truncated, and node 0 turned into a split whose left child is itself
+            byte[] good = java.nio.file.Files.readAllBytes(file);
+            int nodes = forest.getCompiled().numNodes();
+            java.nio.ByteBuffer looped = java.nio.ByteBuffer.wrap(good.clone());
+            looped.putInt(good.length - 24 * nodes, 0);  // feature[0]
+            looped.putInt(good.length - 12 * nodes, 0);  // left[0]
+            for (byte[] bad : new byte[][] {Arrays.copyOf(good, good.length / 2), looped.array()}) {
+                java.nio.file.Files.write(file, bad);
+                try {
+                    RandomForestModel.load(file);
+                } catch (java.io.IOException e) {
+                    rejected++;
+                }
+            }
+            java.nio.file.Files.delete(file);
+        } catch (java.io.IOException e) {
+            throw new AssertionError("Snapshot round trip failed: " + e.getMessage());
+        }
+
+        System.out.println("Expected: True, Evaluating: truncated or looping snapshots fail to load");
+        assert rejected == 2 : rejected + " of 2 corrupt snapshots rejected";
+
+        boolean same = loaded.getSeed() == 77L && loaded.getTrainedRows() == 250;
+        for (Map<String, Object> row : rows) {
+            if (forest.predict(row) != loaded.predict(row)) same = false;
+        }
+
+        System.out.println("Expected: True, Evaluating: loaded model keeps metadata and predictions");
+        assert same : "Loaded model differs from the saved one";
+
+        System.out.println("Expected: True, Evaluating: loaded.getTrees().size() == 6");
+        assert loaded.getTrees().size() == 6 : "Tree graph not rebuilt from snapshot";
+
+        System.out.println("Expected: True, Evaluating: loaded model keeps its training settings");
+        assert loaded.getMtry() == 1 && loaded.isBinnedTraining() && loaded.getMaxLeaves() == 30
+            : "Training settings lost in snapshot";
+
+        ColumnarDataset data = ColumnarDataset.fromRows(rows);
+        rows.get(17).put("Diet Quality", 11);
+        System.out.println("Expected: True, Evaluating: the snapshot fingerprint matches only the training data");
+        assert loaded.getDataFingerprint() == data.fingerprint() && data.fingerprint() != 0
+            : "Fingerprint not kept";
+        assert ColumnarDataset.fromRows(rows).fingerprint() != data.fingerprint() : "Changed value not detected";
+        assert ColumnarDataset.fromRows(rows.subList(0, 249)).fingerprint() != data.fingerprint()
+            : "Changed row count not detected";
+
+        System.out.println("✅ ModelSnapshot passed.");
+    }
+
+    public static void testKdTree() {
+        System.out.println("Testing KdTree...");
+
+        Random rand = new Random(3);
+        int n = 2000, dims = 4;
+        double[] points = new double[n * dims];
+        double[] original = new double[n * dims];
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+            for (int d = 0; d < dims; d++) {
+                // Coarse values so ties and duplicate coordinates are common
+                original[i * dims + d] = points[i * dims + d] = rand.nextInt(20) / 20.0;
+            }
+        }
+        KdTree tree = new KdTree(points, ids, dims);
+
+        double[] weights = {1, 0, 1, 1};
+        boolean exact = true;
+        for (int q = 0; q < 50; q++) {
+            double[] query = new double[dims];
+            for (int d = 0; d < dims; d++) query[d] = rand.nextDouble();
+
+            KdTree.Neighbors result = new KdTree.Neighbors(5);
+            tree.search(query, weights, result);
+            int[] found = result.sortedIds();
+
+            // Brute force: the 5th smallest distance must match
+            double[] all = new double[n];
+            for (int i = 0; i < n; i++) {
+                double sum = 0;
+                for (int d = 0; d < dims; d++) {
+                    double diff = query[d] - original[i * dims + d];
+                    sum += weights[d] * diff * diff;
+                }
+                all[i] = sum;
+            }
+            double[] sorted = all.clone();
+            Arrays.sort(sorted);
+            if (found.length != 5 || all[found[4]] != sorted[4] || all[found[0]] != sorted[0]) exact = false;
+        }
+
+        System.out.println("Expected: True, Evaluating: k-d tree neighbours match a brute-force scan");
+        assert exact : "k-d tree search is not exact";
+
+        System.out.println("✅ KdTree passed.");
+    }
+
+    public static void testPredictionBatcher() {
+        System.out.println("Testing PredictionBatcher...");
+
+        Random rand = new Random(8);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("Caffeine intake", rand.nextInt(500));
+            row.put("SleepHours", rand.nextDouble() * 10);
+            row.put("Stress level", rand.nextInt(2));
+            rows.add(row);
+        }
+        RandomForestModel forest = new RandomForestModel(5, 6, 30, 4L);
+        forest.setProgressListener(null);
+        forest.train(rows);
+
+        List<java.util.concurrent.CompletableFuture<Integer>> futures = new ArrayList<>();
+        boolean same = true;
+        try (PredictionBatcher batcher = new PredictionBatcher(forest, 2000, 64)) {
+            for (Map<String, Object> row : rows) {
+                futures.add(batcher.submit(forest.getCompiled().encode(row)));
+            }
+            for (int i = 0; i < rows.size(); i++) {
+                if (futures.get(i).join() != forest.predict(rows.get(i))) same = false;
+            }
+        }
+
+        System.out.println("Expected: True, Evaluating: batched predictions match direct predictions");
+        assert same : "Micro-batched prediction differs";
+
+        // Submits racing close() must all finish, scored or refused, never left pending
+        List<java.util.concurrent.CompletableFuture<Integer>> racing = Collections.synchronizedList(new ArrayList<>());
+        double[] x = forest.getCompiled().encode(rows.get(0));
+        for (int round = 0; round < 20; round++) {
+            PredictionBatcher batcher = new PredictionBatcher(forest, 50, 8);
+            Thread submitter = new Thread(() -> {
+                for (int i = 0; i < 500; i++) racing.add(batcher.submit(x));
+            });
+            submitter.start();
+            batcher.close();
+            try {
+                submitter.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        boolean allDone = true;
+        for (java.util.concurrent.CompletableFuture<Integer> future : racing) {
+            try {
+                future.get(5, java.util.concurrent.TimeUnit.SECONDS);
+            } catch (java.util.concurrent.TimeoutException e) {
+                allDone = false;
+            } catch (InterruptedException | java.util.concurrent.ExecutionException e) {
+                // refused by the closed batcher
+            }
+        }
+        System.out.println("Expected: True, Evaluating: every submit racing close() completes");
+        assert allDone : "A submission racing close() never completed";
+
+        Object parsed = Json.parse("{\"Age\": 30, \"SleepHours\": 6.5, \"tags\": [\"a\", null]}");
+        System.out.println("Expected: True, Evaluating: Json round trip keeps numbers and arrays");
+        assert Json.write(parsed).equals("{\"Age\":30,\"SleepHours\":6.5,\"tags\":[\"a\",null]}") : "Json round trip failed";
+
+        System.out.println("✅ PredictionBatcher passed.");
+    }
+
+    public static void testBulkScorer() {
+        System.out.println("Testing BulkScorer...");
+
+        Random rand = new Random(9);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        StringBuilder csv = new StringBuilder("Caffeine intake,SleepHours,Stress level\n");
+        for (int i = 0; i < 2000; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("Caffeine intake", rand.nextInt(500));
+            row.put("SleepHours", Math.round(rand.nextDouble() * 100) / 10.0);
+            row.put("Stress level", rand.nextInt(2));
+            rows.add(row);
+            csv.append(row.get("Caffeine intake")).append(',').append(row.get("SleepHours")).append(',')
+               .append(row.get("Stress level")).append(i % 7 == 0 ? "\r\r\n" : i % 3 == 0 ? "\r\n" : "\n");
+            if (i % 500 == 0) csv.append('\n'); // blank lines are skipped
+            if (i % 400 == 0) csv.append("\r\r\n"); // so are lines holding only '\r'
+        }
+        RandomForestModel forest = new RandomForestModel(5, 6, 30, 5L);
+        forest.setProgressListener(null);
+        forest.train(rows);
+
+        boolean same = true;
+        long scored = -1;
+        try {
+            java.nio.file.Path in = java.nio.file.Files.createTempFile("score-in", ".csv");
+            java.nio.file.Path out = java.nio.file.Files.createTempFile("score-out", ".csv");
+            java.nio.file.Files.writeString(in, csv);
+            // Small chunks force many chunk boundaries and out-of-order completion
+            scored = new BulkScorer(forest, 1024, 3).score(in, out);
+
+            List<String> lines = java.nio.file.Files.readAllLines(out);
+            same = lines.size() == rows.size() + 1 && lines.get(0).endsWith("," + BulkScorer.OUTPUT_COLUMN);
+            for (int i = 0; same && i < rows.size(); i++) {
+                String line = lines.get(i + 1);
+                int predicted = Integer.parseInt(line.substring(line.lastIndexOf(',') + 1));
+                String input = rows.get(i).get("Caffeine intake") + "," + rows.get(i).get("SleepHours") + ","
+                        + rows.get(i).get("Stress level") + ",";
+                if (!line.equals(input + predicted) || predicted != forest.predict(rows.get(i))) same = false;
+            }
+            java.nio.file.Files.delete(in);
+            java.nio.file.Files.delete(out);
+        } catch (java.io.IOException e) {
+            same = false;
+        }
+
+        System.out.println("Expected: True, Evaluating: every row scored once, in input order");
+        assert scored == rows.size() : "Scored " + scored + " rows";
+        System.out.println("Expected: True, Evaluating: bulk predictions match direct predictions, next to their own rows");
+        assert same : "Bulk-scored output differs";
+
+        System.out.println("✅ BulkScorer passed.");
+    }
+
+    public static void testBinnedTraining() {
+        System.out.println("Testing binned training...");
+
+        // Few distinct values: every value gets its own bin, so the histogram splitter must
+        // grow exactly the trees of the sorted splitter
+        Random rand = new Random(12);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("Caffeine intake", rand.nextInt(200));
+            row.put("SleepHours", rand.nextInt(50) / 10.0);
+            if (i % 7 != 0) row.put("Age", 18 + rand.nextInt(60)); // some missing values
+            row.put("Stress level", rand.nextInt(2));
+            rows.add(row);
+        }
+        ColumnarDataset data = ColumnarDataset.fromRows(rows);
+
+        RandomForestModel exact = new RandomForestModel(5, 12, 30, 3L);
+        exact.setProgressListener(null);
+        exact.train(data);
+        RandomForestModel binned = new RandomForestModel(5, 12, 30, 3L);
+        binned.setProgressListener(null);
+        binned.setBinnedTraining(true);
+        binned.train(data);
+
+        CompiledForest a = exact.getCompiled();
+        CompiledForest b = binned.getCompiled();
+        System.out.println("Expected: True, Evaluating: histogram trees equal sorted-sweep trees when values fit in bins");
+        assert Arrays.equals(a.features(), b.features()) && Arrays.equals(a.thresholds(), b.thresholds())
+            && Arrays.equals(a.leafClasses(), b.leafClasses()) : "Binned forest differs";
+
+        // Many distinct values: at most 255 bins, ordered, and the heavy value 42 (a third of
+        // the rows, far more than one bin's share) alone in its bin
+        double[] values = new double[10000];
+        for (int i = 0; i < values.length; i++) values[i] = i % 3 == 0 ? 42.0 : rand.nextDouble() * 100;
+        values[5] = Double.NaN;
+        double[][] edges = BinnedDataset.binEdges(values);
+        double[] upper = edges[1];
+        boolean ordered = upper.length <= BinnedDataset.MAX_BINS;
+        for (int i = 1; i < upper.length; i++) ordered &= upper[i - 1] < upper[i];
+        int bin42 = BinnedDataset.binOf(42.0, upper);
+        System.out.println("Expected: True, Evaluating: quantized bins are capped, ordered and keep ties together");
+        assert ordered && edges[0][bin42] == 42.0 && upper[bin42] == 42.0 : "Bad bin edges";
+        System.out.println("Expected: True, Evaluating: missing values fall in the missing bin");
+        assert BinnedDataset.binOf(Double.NaN, upper) == BinnedDataset.MISSING_BIN : "NaN not in missing bin";
+
+        System.out.println("✅ Binned training passed.");
+    }
+
+    private static ColumnarDataset caffeineRule(Random rand, int n, boolean highMeansStress) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Map<String, Object> row = new HashMap<>();
+            int caffeine = rand.nextInt(500);
+            row.put("Caffeine intake", caffeine);
+            row.put("SleepHours", rand.nextDouble() * 10);
+            row.put("Stress level", (caffeine > 250) == highMeansStress ? 1 : 0);
+            rows.add(row);
+        }
+        return ColumnarDataset.fromRows(rows);
+    }
+
+    public static void testOutOfBagEvaluation() {
+        System.out.println("Testing out-of-bag evaluation...");
+
+        // Stress follows caffeine alone; the other feature is noise
+        Random rand = new Random(13);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Map<String, Object> row = new HashMap<>();
+            int caffeine = rand.nextInt(500);
+            row.put("Caffeine intake", caffeine);
+            row.put("SleepHours", rand.nextDouble() * 10);
+            row.put("Stress level", caffeine > 250 ? 1 : 0);
+            rows.add(row);
+        }
+        ColumnarDataset data = ColumnarDataset.fromRows(rows);
+        RandomForestModel forest = new RandomForestModel(15, 6, 30, 6L);
+        forest.setProgressListener(null);
+        forest.train(data);
+
+        System.out.println("Expected: True, Evaluating: out-of-bag accuracy is tracked during training");
+        assert forest.getOutOfBagAccuracy() > 0.95 : "OOB accuracy " + forest.getOutOfBagAccuracy();
+
+        double[] importance = forest.permutationImportance(data, 1L);
+        int caffeine = Arrays.asList(forest.getFeatureNames()).indexOf("Caffeine intake");
+        int sleep = Arrays.asList(forest.getFeatureNames()).indexOf("SleepHours");
+        System.out.println("Expected: True, Evaluating: the informative feature has the larger permutation importance");
+        assert importance[caffeine] > 0.3 && importance[sleep] < importance[caffeine] : Arrays.toString(importance);
+
+        System.out.println("✅ Out-of-bag evaluation passed.");
+    }
+
+    public static void testForestUpdate() {
+        System.out.println("Testing online forest update...");
+
+        // The relationship flips after training; updates should follow the new one
+        Random rand = new Random(14);
+        RandomForestModel forest = new RandomForestModel(10, 6, 30, 7L);
+        forest.setProgressListener(null);
+        forest.setUpdateWindow(1000);
+        forest.setTreesPerUpdate(3);
+        forest.train(caffeineRule(rand, 2000, true));
+
+        ColumnarDataset holdout = caffeineRule(rand, 500, false);
+        double before = accuracy(forest, holdout);
+        for (int i = 0; i < 6; i++) {
+            forest.update(caffeineRule(rand, 300, false));
+        }
+        double after = accuracy(forest, holdout);
+
+        System.out.println("Expected: True, Evaluating: updates replace trees and the forest keeps its size");
+        assert forest.getCompiled().numTrees() == 10 : "Tree count changed";
+        System.out.println("Expected: True, Evaluating: accuracy on the new relationship improves after updates");
+        assert before < 0.2 && after > 0.9 : "Accuracy " + before + " -> " + after;
+        System.out.println("Expected: True, Evaluating: the last update batch was scored before being absorbed");
+        assert forest.getLastUpdateAccuracy() > 0.5 : "Last update accuracy " + forest.getLastUpdateAccuracy();
+
+        System.out.println("✅ Online forest update passed.");
+    }
+
+    private static double accuracy(RandomForestModel forest, ColumnarDataset data) {
+        double[] x = new double[data.numFeatures()];
+        int correct = 0;
+        for (int row = 0; row < data.numRows(); row++) {
+            data.row(row, x);
+            if (forest.predict(x) == data.label(row)) correct++;
+        }
+        return correct / (double) data.numRows();
+    }
+
+    public static void testBoundedCache() {
+        System.out.println("Testing BoundedCache...");
+
+        Object owner = new Object();
+        BoundedCache<Integer> cache = new BoundedCache<>(2, 0);
+        cache.put(BoundedCache.Key.of(1, 2), owner, 0, 10);
+        cache.put(BoundedCache.Key.of(3, 4), owner, 0, 20);
+        cache.get(BoundedCache.Key.of(1, 2), owner, 0);       // (1, 2) is now most recent
+        cache.put(BoundedCache.Key.of(5, 6), owner, 0, 30);   // evicts (3, 4)
+        System.out.println("Expected: True, Evaluating: least recently used entry is evicted at capacity");
+        assert cache.get(BoundedCache.Key.of(3, 4), owner, 0) == null
+            && cache.get(BoundedCache.Key.of(1, 2), owner, 0) == 10 && cache.evictions() == 1 : cache;
+
+        System.out.println("Expected: True, Evaluating: -0.0 and 0.0, and any two NaNs, are the same key");
+        assert BoundedCache.Key.of(-0.0, Double.NaN).equals(BoundedCache.Key.of(0.0, 0.0 / 0.0)) : "Key not canonical";
+
+        System.out.println("Expected: True, Evaluating: a new version or owner misses");
+        assert cache.get(BoundedCache.Key.of(5, 6), owner, 1) == null : "Stale version hit";
+        cache.put(BoundedCache.Key.of(5, 6), owner, 1, 31);
+        assert cache.get(BoundedCache.Key.of(5, 6), new Object(), 1) == null : "Foreign owner hit";
+
+        BoundedCache<Integer> shortLived = new BoundedCache<>(10, 1);
+        shortLived.put(BoundedCache.Key.of(7), owner, 0, 70);
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Expected: True, Evaluating: entries expire after their time to live");
+        assert shortLived.get(BoundedCache.Key.of(7), owner, 0) == null && shortLived.expirations() == 1 : shortLived;
+
+        // The predictor cache answers repeats and drops answers once the forest is updated
+        Random rand = new Random(15);
+        RandomForestModel forest = new RandomForestModel(5, 6, 30, 8L);
+        forest.setProgressListener(null);
+        forest.train(caffeineRule(rand, 1000, true));
+        StressPredictorImpl predictor = new StressPredictorImpl(100, 0);
+        Map<String, Object> input = new HashMap<>();
+        input.put("Caffeine intake", 400);
+        input.put("SleepHours", 6.0);
+        int first = predictor.predictStressLevel(forest, input);
+        int second = predictor.predictStressLevel(forest, input);
+        System.out.println("Expected: True, Evaluating: repeated prediction is served from the cache");
+        assert first == second && first == forest.predict(input) && predictor.getPredictionCache().hits() == 1
+            : predictor.getPredictionCache();
+        forest.update(caffeineRule(rand, 200, true));
+        predictor.predictStressLevel(forest, input);
+        System.out.println("Expected: True, Evaluating: a forest update invalidates cached predictions");
+        assert predictor.getPredictionCache().hits() == 1 && predictor.getPredictionCache().expirations() == 1
+            : predictor.getPredictionCache();
+
+        System.out.println("✅ BoundedCache passed.");
+    }
+
+    public static void testPipelineMetrics() {
+        System.out.println("Testing PipelineMetrics...");
+
+        PipelineMetrics metrics = PipelineMetrics.get();
+        metrics.reset();
+        RandomForestModel forest = new RandomForestModel(4, 5, 30, 9L);
+        forest.setProgressListener(null);
+        forest.train(caffeineRule(new Random(16), 500, true));
+        StressPredictorImpl predictor = new StressPredictorImpl();
+        Map<String, Object> input = new HashMap<>();
+        input.put("Caffeine intake", 100);
+        for (int i = 0; i < 50; i++) predictor.predictStressLevel(forest, input);
+        metrics.recordModel(forest);
+
+        // Forests trained afterwards, like grid search folds, leave the recorded model alone
+        RandomForestModel other = new RandomForestModel(7, 5, 30, 10L);
+        other.setProgressListener(null);
+        other.train(caffeineRule(new Random(17), 200, true));
+
+        System.out.println("Expected: True, Evaluating: tree builds, depth and model size are recorded");
+        assert metrics.getTreesBuilt() == 11 && metrics.getMaxTreeDepth() <= 5 && metrics.getMeanTreeNodes() >= 1
+            && metrics.getModelTrees() == 4 && metrics.getModelBytes() > 0 : metrics;
+
+        forest.update(caffeineRule(new Random(18), 200, true));
+        System.out.println("Expected: True, Evaluating: the model gauges follow the recorded forest's updates");
+        assert metrics.getModelNodes() == forest.getCompiled().numNodes() : metrics;
+        System.out.println("Expected: True, Evaluating: prediction count and latency percentiles are recorded");
+        assert metrics.getPredictions() == 50 && metrics.getPredictionMicrosP99() >= metrics.getPredictionMicrosP50()
+            && metrics.getPredictionMicrosP50() > 0 : metrics;
+
+        metrics.register();
+        Object trees = null;
+        try {
+            trees = java.lang.management.ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new javax.management.ObjectName(PipelineMetrics.OBJECT_NAME), "TreesBuilt");
+        } catch (javax.management.JMException e) {
+            System.out.println("JMX lookup failed: " + e);
+        }
+        System.out.println("Expected: True, Evaluating: metrics are readable over JMX");
+        assert Long.valueOf(metrics.getTreesBuilt()).equals(trees) : "TreesBuilt over JMX: " + trees;
+
+        // Batched and bulk scoring count every row they score; the map loader records its load
+        long before = metrics.getPredictions();
+        long loads = metrics.getDatasetLoads();
+        long bulkRows = -1;
+        int batched = 0;
+        try (PredictionBatcher batcher = new PredictionBatcher(forest, 200, 8)) {
+            List<java.util.concurrent.CompletableFuture<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) results.add(batcher.submit(new double[] {i * 25.0, 7.0}));
+            for (java.util.concurrent.CompletableFuture<Integer> result : results) {
+                result.join();
+                batched++;
+            }
+        }
+        try {
+            java.nio.file.Path in = java.nio.file.Files.createTempFile("metrics-in", ".csv");
+            java.nio.file.Path out = java.nio.file.Files.createTempFile("metrics-out", ".csv");
+            java.nio.file.Files.writeString(in, "Caffeine intake,Stress level\n100,1\n300,5\n450,8\n");
+            bulkRows = new BulkScorer(forest).score(in, out);
+            new DataProcessorImpl().loadDataset(in.toString());
+            java.nio.file.Files.delete(in);
+            java.nio.file.Files.delete(out);
+        } catch (java.io.IOException e) {
+            System.out.println("Bulk scoring failed: " + e);
+        }
+        System.out.println("Expected: True, Evaluating: batched and bulk predictions are recorded per row");
+        assert batched == 20 && bulkRows == 3 && metrics.getPredictions() == before + 23 : metrics;
+        System.out.println("Expected: True, Evaluating: loading a dataset as maps is recorded");
+        assert metrics.getDatasetLoads() == loads + 1 && metrics.getLastLoadRows() == 3 : metrics;
+
+        System.out.println("✅ PipelineMetrics passed.");
+    }
+
+    public static void testEarlyStopVoting() {
+        System.out.println("Testing early-stop voting...");
+
+        Random rand = new Random(17);
+        ColumnarDataset data = caffeineRule(rand, 1000, true);
+        RandomForestModel forest = new RandomForestModel(51, 6, 30, 10L);
+        forest.setProgressListener(null);
+        forest.train(data);
+        CompiledForest compiled = forest.getCompiled();
+
+        boolean same = true;
+        boolean probaOk = true;
+        long walked = 0;
+        double[] x = new double[data.numFeatures()];
+        int[] votes = new int[compiled.numClasses()];
+        for (int row = 0; row < data.numRows(); row++) {
+            data.row(row, x);
+            walked += compiled.vote(x, votes, true);
+            double[] proba = forest.predictProba(x);
+            int full = proba[1] > proba[0] ? 1 : 0;
+            if (forest.predict(x) != full) same = false;
+            if (Math.abs(proba[0] + proba[1] - 1.0) > 1e-9) probaOk = false;
+        }
+
+        System.out.println("Expected: True, Evaluating: early-stopped votes give the full-vote answer");
+        assert same : "Early stop changed a prediction";
+        System.out.println("Expected: True, Evaluating: vote shares sum to 1");
+        assert probaOk : "Bad probabilities";
+        System.out.println("Expected: True, Evaluating: clear-cut rows stop after about half the trees");
+        assert walked < data.numRows() * 35L : "Walked " + walked / (double) data.numRows() + " trees per row";
+
+        System.out.println("✅ Early-stop voting passed.");
+    }
+
+    public static void testDatasetStatistics() {
+        System.out.println("Testing DatasetStatistics...");
+
+        Random rand = new Random(18);
+        ColumnarDataset data = caffeineRule(rand, 5000, true);
+        DatasetStatistics stats = DatasetStatistics.of(data);
+
+        int f = data.featureIndex("Caffeine intake");
+        double[] values = data.column(f).clone();
+        Arrays.sort(values);
+        double sum = 0;
+        for (double v : values) sum += v;
+        double mean = sum / values.length;
+        double sq = 0;
+        for (double v : values) sq += (v - mean) * (v - mean);
+
+        DatasetStatistics.FeatureStats caffeine = stats.overall("Caffeine intake");
+        System.out.println("Expected: True, Evaluating: mean, variance and range match a direct computation");
+        assert Math.abs(caffeine.mean() - mean) < 1e-9 && Math.abs(caffeine.variance() - sq / (values.length - 1)) < 1e-6
+            && caffeine.min() == values[0] && caffeine.max() == values[values.length - 1] : "Moments differ";
+
+        double exactMedian = values[values.length / 2];
+        double exactP90 = values[(int) (values.length * 0.9)];
+        System.out.println("Expected: True, Evaluating: quantiles are within 1% of the range");
+        assert Math.abs(caffeine.median() - exactMedian) < 5 && Math.abs(caffeine.quantile(0.9) - exactP90) < 5
+            : caffeine.median() + " vs " + exactMedian;
+
+        System.out.println("Expected: True, Evaluating: per-class statistics split by stress level");
+        assert stats.forClass(1, "Caffeine intake").min() > 250 && stats.forClass(0, "Caffeine intake").max() <= 250
+            : "Class statistics wrong";
+
+        // Row-by-row updates agree with the one-pass build
+        DatasetStatistics incremental = new DatasetStatistics(data.getFeatureNames());
+        double[] row = new double[data.numFeatures()];
+        for (int r = 0; r < data.numRows(); r++) {
+            data.row(r, row);
+            incremental.add(row, data.label(r));
+        }
+        // An overflowing cell parses to Infinity; it is counted apart instead of widening the histogram forever
+        DatasetStatistics.FeatureStats withInfinity = null;
+        try {
+            java.nio.file.Path csv = java.nio.file.Files.createTempFile("stats-inf", ".csv");
+            java.nio.file.Files.writeString(csv, "Caffeine intake,Stress level\n100,1\n1e999,2\n-1e999,3\n300,4\n");
+            withInfinity = DatasetStatistics.of(new MappedCsvLoader().load(csv)).overall("Caffeine intake");
+            java.nio.file.Files.delete(csv);
+        } catch (java.io.IOException e) {
+            System.out.println("Could not load: " + e);
+        }
+        System.out.println("Expected: True, Evaluating: infinite values are skipped and counted");
+        assert withInfinity != null && withInfinity.count() == 2 && withInfinity.nonFinite() == 2
+            && withInfinity.max() == 300 && withInfinity.median() >= 100 && withInfinity.median() <= 300 : "Infinity mishandled";
+
+        System.out.println("Expected: True, Evaluating: incremental updates match the batch build");
+        assert Math.abs(incremental.overall("SleepHours").mean() - stats.overall("SleepHours").mean()) < 1e-9
+            && incremental.numRows() == stats.numRows() : "Incremental statistics differ";
+
+        List<Map<String, Object>> users = new ArrayList<>();
+        for (int i = 0; i < 30; i++) users.add(data.toRowMap(i));
+        boolean exported = false;
+        try {
+            java.nio.file.Path out = java.nio.file.Files.createTempFile("radar-batch", ".csv");
+            new GraphGeneratorImpl().exportRadarData(users, stats, out.toString());
+            exported = java.nio.file.Files.readAllLines(out).size() == 1 + 30 * 2;
+            java.nio.file.Files.delete(out);
+        } catch (java.io.IOException e) {
+            System.out.println("Export failed: " + e);
+        }
+        System.out.println("Expected: True, Evaluating: batch radar export writes every user's rows in one file");
+        assert exported : "Batch radar export incomplete";
+
+        System.out.println("✅ DatasetStatistics passed.");
+    }
+
+    public static void testGridSearch() {
+        System.out.println("Testing GridSearch...");
+
+        // Stress needs both features (an XOR), so one-level trees cannot learn it
+        Random rand = new Random(19);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Map<String, Object> row = new HashMap<>();
+            int caffeine = rand.nextInt(500);
+            double sleep = rand.nextDouble() * 10;
+            row.put("Caffeine intake", caffeine);
+            row.put("SleepHours", sleep);
+            row.put("Stress level", (caffeine > 250) != (sleep > 5) ? 1 : 0);
+            rows.add(row);
+        }
+        ColumnarDataset data = ColumnarDataset.fromRows(rows);
+
+        List<GridSearch.Params> grid = GridSearch.grid(new int[] {5}, new int[] {1, 6}, new int[] {30});
+        List<GridSearch.Result> results = new GridSearch(4, 3L).run(data, grid);
+
+        System.out.println("Expected: True, Evaluating: every grid point is scored on every fold");
+        assert results.size() == 2 && results.get(0).foldAccuracy.length == 4 : "Missing results";
+        System.out.println("Expected: True, Evaluating: the deeper forest ranks first and generalizes");
+        assert results.get(0).params.maxDepth == 6 && results.get(0).meanAccuracy > 0.9
+            && results.get(1).meanAccuracy < 0.7 : results;
+
+        BitSet holdout = new BitSet(data.numRows());
+        for (int row = 0; row < data.numRows(); row += 4) holdout.set(row);
+        RandomForestModel fold = new RandomForestModel(3, 6, 30, 3L);
+        fold.setProgressListener(null);
+        fold.train(data, holdout);
+        System.out.println("Expected: True, Evaluating: a fold's forest counts only the rows it trained on");
+        assert fold.getTrainedRows() == 750 : fold.getTrainedRows() + " trained rows";
+
+        // Binned folds take their bins from the training rows alone
+        int[] kept = new int[750];
+        for (int row = holdout.nextClearBit(0), k = 0; row < data.numRows(); row = holdout.nextClearBit(row + 1)) {
+            kept[k++] = row;
+        }
+        BinnedDataset foldBins = BinnedDataset.of(data, holdout);
+        BinnedDataset trainBins = BinnedDataset.of(data.select(kept));
+        boolean sameBins = foldBins.numRows() == data.numRows();
+        for (int f = 0; f < data.numFeatures(); f++) {
+            if (!Arrays.equals(foldBins.upperBounds(f), trainBins.upperBounds(f))) sameBins = false;
+        }
+        System.out.println("Expected: True, Evaluating: held-out rows do not move a fold's bin edges");
+        assert sameBins : "Held-out rows changed the bins";
+
+        System.out.println("✅ GridSearch passed.");
+    }
+
+    public static void testMaxLeaves() {
+        System.out.println("Testing maxLeaves...");
+
+        // Caffeine decides stress except for every seventh row, so unlimited trees keep splitting
+        Random rand = new Random(20);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Map<String, Object> row = new HashMap<>();
+            int caffeine = rand.nextInt(500);
+            row.put("Caffeine intake", caffeine);
+            row.put("SleepHours", rand.nextDouble() * 10);
+            row.put("Stress level", (caffeine > 250) != (i % 7 == 0) ? 1 : 0);
+            rows.add(row);
+        }
+        ColumnarDataset data = ColumnarDataset.fromRows(rows);
+
+        DecisionTreeModel unlimited = new DecisionTreeModel(12, 0);
+        DecisionTreeModel loose = new DecisionTreeModel(12, 1_000_000);
+        DecisionTreeModel capped = new DecisionTreeModel(12, 8);
+        int[] weights = new BootstrapSample(20L, BootstrapSample.Mode.POISSON).weights(data);
+
+        System.out.println("Expected: True, Evaluating: an unreachable cap grows the same tree as no cap");
+        assert CompiledForest.compile(List.of(unlimited.buildTree(data, weights, 0)), data.getFeatureNames()).numNodes()
+            == CompiledForest.compile(List.of(loose.buildTree(data, weights, 0)), data.getFeatureNames()).numNodes()
+            : "Unreachable cap changed the tree";
+
+        System.out.println("Expected: True, Evaluating: a capped tree has exactly maxLeaves leaves");
+        assert leaves(capped.buildTree(data, weights, 0)) == 8 : "Wrong leaf count";
+        assert leaves(capped.buildTree(BinnedDataset.of(data), weights, 0)) == 8 : "Wrong binned leaf count";
+
+        System.out.println("Expected: True, Evaluating: the first split of a capped tree is the informative one");
+        assert "Caffeine intake".equals(capped.buildTree(data, weights, 0).split_feature) : "Wrong root split";
+
+        System.out.println("✅ maxLeaves passed.");
+    }
+
+    private static int leaves(DecisionTreeNode node) {
+        return node.isLeaf() ? 1 : leaves(node.left) + leaves(node.right);
+    }
+
+    public static void testMtry() {
+        System.out.println("Testing mtry feature sampling...");
+
+        // Caffeine decides stress; eight more columns are noise
+        Random rand = new Random(21);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Map<String, Object> row = new HashMap<>();
+            int caffeine = rand.nextInt(500);
+            row.put("Caffeine intake", caffeine);
+            for (int f = 0; f < 8; f++) row.put("Noise " + f, rand.nextDouble());
+            row.put("Stress level", caffeine > 250 ? 1 : 0);
+            rows.add(row);
+        }
+        ColumnarDataset data = ColumnarDataset.fromRows(rows);
+        int caffeine = data.featureIndex("Caffeine intake");
+
+        RandomForestModel full = new RandomForestModel(20, 6, 0, 21L);
+        full.setProgressListener(null);
+        full.setMtry(data.numFeatures());
+        full.train(data);
+        RandomForestModel sampled = new RandomForestModel(20, 6, 0, 21L);
+        sampled.setProgressListener(null);
+        sampled.train(data); // default: sqrt(9) = 3 features per split
+
+        System.out.println("Expected: True, Evaluating: searching every feature always roots trees on caffeine");
+        assert rootsOn(full.getCompiled(), caffeine) == 20 : "Full search missed the informative feature";
+        System.out.println("Expected: True, Evaluating: sampled trees search different features");
+        int onCaffeine = rootsOn(sampled.getCompiled(), caffeine);
+        assert onCaffeine > 0 && onCaffeine < 20 : onCaffeine + " of 20 roots on caffeine";
+        System.out.println("Expected: True, Evaluating: sampled forest still learns the rule");
+        assert accuracy(sampled, data) > 0.95 : "Sampled forest accuracy too low";
+
+        System.out.println("Expected: True, Evaluating: feature draws are the same with or without threads");
+        RandomForestModel sequential = new RandomForestModel(20, 6, 0, 21L);
+        sequential.setProgressListener(null);
+        sequential.setExecutor(null);
+        sequential.train(data);
+        assert Arrays.equals(sequential.getCompiled().features(), sampled.getCompiled().features())
+            && Arrays.equals(sequential.getCompiled().thresholds(), sampled.getCompiled().thresholds())
+            : "Feature sampling depends on scheduling";
+
+        System.out.println("✅ mtry feature sampling passed.");
+    }
+
+    private static int rootsOn(CompiledForest forest, int feature) {
+        int count = 0;
+        for (int root : forest.roots()) {
+            if (forest.features()[root] == feature) count++;
+        }
+        return count;
+    }
+
+    public static void testParallelTreeGrowth() {
+        System.out.println("Testing parallel tree growth...");
+
+        // Large enough that the root's features are scanned and partitioned concurrently
+        Random rand = new Random(22);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 3 * DecisionTreeModel.PARALLEL_SCAN_ROWS; i++) {
+            Map<String, Object> row = new HashMap<>();
+            int caffeine = rand.nextInt(500);
+            double sleep = rand.nextDouble() * 10;
+            row.put("Caffeine intake", caffeine);
+            row.put("SleepHours", sleep);
+            row.put("Age", 18 + rand.nextInt(50));
+            row.put("Stress level", (caffeine > 250) != (sleep > 5) != (rand.nextInt(10) == 0) ? 1 : 0);
+            rows.add(row);
+        }
+        ColumnarDataset data = ColumnarDataset.fromRows(rows);
+        BinnedDataset binned = BinnedDataset.of(data);
+        String[] names = data.getFeatureNames();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int maxLeaves : new int[] {0, 40}) {
+                DecisionTreeModel sequential = new DecisionTreeModel(12, maxLeaves);
+                sequential.setForkJoinPool(null);
+                DecisionTreeModel parallel = new DecisionTreeModel(12, maxLeaves);
+                parallel.setForkJoinPool(pool);
+
+                System.out.println("Expected: True, Evaluating: parallel growth gives the sequential tree (maxLeaves " + maxLeaves + ")");
+                CompiledForest a = CompiledForest.compile(List.of(sequential.buildTree(data, null, 0)), names);
+                CompiledForest b = CompiledForest.compile(List.of(parallel.buildTree(data, null, 0)), names);
+                assert Arrays.equals(a.features(), b.features()) && Arrays.equals(a.thresholds(), b.thresholds())
+                    && Arrays.equals(a.leafClasses(), b.leafClasses()) : "Parallel tree differs";
+
+                System.out.println("Expected: True, Evaluating: same for histogram splits (maxLeaves " + maxLeaves + ")");
+                a = CompiledForest.compile(List.of(sequential.buildTree(binned, null, 0)), names);
+                b = CompiledForest.compile(List.of(parallel.buildTree(binned, null, 0)), names);
+                assert Arrays.equals(a.features(), b.features()) && Arrays.equals(a.thresholds(), b.thresholds())
+                    && Arrays.equals(a.leafClasses(), b.leafClasses()) : "Parallel binned tree differs";
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        System.out.println("✅ Parallel tree growth passed.");
+    }
+
+    public static void testOffHeapDataset() {
+        System.out.println("Testing OffHeapDataset...");
+
+        // Raw CSV with an extra column, invalid stress levels and blank lines for filterData to drop
+        Random rand = new Random(23);
+        StringBuilder csv = new StringBuilder("Caffeine intake,Notes,SleepHours,Stress level,Age\n");
+        for (int i = 0; i < 3000; i++) {
+            int caffeine = rand.nextInt(500);
+            int stress = i % 11 == 0 ? 0 : (caffeine > 250 ? 6 + rand.nextInt(5) : 1 + rand.nextInt(5));
+            csv.append(caffeine).append(",x,").append(i % 13 == 0 ? "" : String.valueOf(rand.nextDouble() * 10))
+               .append(',').append(stress).append(',').append(18 + rand.nextInt(50)).append('\n');
+            if (i % 700 == 0) csv.append('\n');
+        }
+
+        DataProcessorImpl processor = new DataProcessorImpl();
+        ColumnarDataset expected;
+        OffHeapDataset mapped;
+        java.nio.file.Path columnFile;
+        try {
+            java.nio.file.Path in = java.nio.file.Files.createTempFile("offheap-in", ".csv");
+            columnFile = java.nio.file.Files.createTempFile("offheap", ".cols");
+            java.nio.file.Files.writeString(in, csv);
+            expected = processor.filterData(new MappedCsvLoader().load(in));
+            // Small chunks put many chunk boundaries inside the file
+            mapped = OffHeapDataset.convert(in, columnFile, 4096, processor::filterData);
+            java.nio.file.Files.delete(in);
+        } catch (java.io.IOException e) {
+            throw new AssertionError("Conversion failed: " + e.getMessage());
+        }
+
+        System.out.println("Expected: True, Evaluating: streamed column file holds the filtered rows");
+        assert Arrays.equals(mapped.getFeatureNames(), expected.getFeatureNames())
+            && mapped.numRows() == expected.numRows() && mapped.numRows() < 3000
+            && mapped.numClasses() == expected.numClasses() : "Schema or row count differs";
+        boolean same = Arrays.equals(mapped.labels(), expected.labels());
+        for (int f = 0; same && f < expected.numFeatures(); f++) {
+            for (int row = 0; same && row < expected.numRows(); row++) {
+                same = Double.compare(mapped.value(row, f), expected.value(row, f)) == 0;
+            }
+        }
+        assert same : "Column values differ";
+
+        System.out.println("Expected: True, Evaluating: direct-memory copy matches too");
+        OffHeapDataset direct = OffHeapDataset.copyOf(expected);
+        assert direct.numRows() == expected.numRows() && direct.label(7) == expected.label(7)
+            && Double.compare(direct.value(7, 1), expected.value(7, 1)) == 0 : "Direct copy differs";
+
+        System.out.println("Expected: True, Evaluating: binning off-heap columns in chunks gives the on-heap bins");
+        // Few distinct values (with both zeros), many distinct values, and missing values
+        ColumnarDataset.Builder mixed = new ColumnarDataset.Builder(new String[] {"Age", "SleepHours"}, 20000);
+        for (int i = 0; i < 20000; i++) {
+            int row = mixed.addRow();
+            mixed.set(row, 0, i % 9 == 0 ? -0.0 : i % 7 == 0 ? Double.NaN : i % 40, true);
+            mixed.set(row, 1, i % 11 == 0 ? Double.NaN : (i * 7919 % 20011) / 100.0, false);
+            mixed.setLabel(row, i % 2);
+        }
+        ColumnarDataset mixedData = mixed.build();
+        BinnedDataset chunked = BinnedDataset.of(OffHeapDataset.copyOf(mixedData));
+        BinnedDataset whole = BinnedDataset.of(mixedData);
+        boolean sameBins = true;
+        for (int f = 0; f < 2; f++) {
+            sameBins &= chunked.numBins(f) == whole.numBins(f) && Arrays.equals(chunked.bins(f), whole.bins(f));
+            for (int b = 0; sameBins && b < whole.numBins(f); b++) {
+                sameBins = Double.compare(chunked.lowerValue(f, b), whole.lowerValue(f, b)) == 0
+                    && Double.compare(chunked.upperValue(f, b), whole.upperValue(f, b)) == 0;
+            }
+        }
+        assert sameBins && whole.numBins(0) == 40 && whole.numBins(1) == BinnedDataset.MAX_BINS : "Chunked bins differ";
+
+        System.out.println("Expected: True, Evaluating: training off-heap grows the binned forest");
+        RandomForestModel offHeap = new RandomForestModel(5, 6, 30, 23L);
+        offHeap.setProgressListener(null);
+        offHeap.train(mapped);
+        RandomForestModel onHeap = new RandomForestModel(5, 6, 30, 23L);
+        onHeap.setProgressListener(null);
+        onHeap.train(BinnedDataset.of(expected));
+        assert Arrays.equals(offHeap.getCompiled().features(), onHeap.getCompiled().features())
+            && Arrays.equals(offHeap.getCompiled().thresholds(), onHeap.getCompiled().thresholds())
+            : "Off-heap training differs";
+
+        System.out.println("Expected: True, Evaluating: off-heap scoring matches row-by-row prediction");
+        int[] predicted = new int[mapped.numRows()];
+        offHeap.predictAll(mapped, predicted);
+        double[] x = new double[mapped.numFeatures()];
+        boolean scored = true;
+        for (int row = 0; scored && row < mapped.numRows(); row++) {
+            mapped.row(row, x);
+            scored = predicted[row] == offHeap.predict(x);
+        }
+        assert scored : "Off-heap scoring differs";
+
+        try {
+            java.nio.file.Files.delete(columnFile);
+        } catch (java.io.IOException e) {
+            // mapped files cannot be deleted on some platforms until unmapped
+        }
+        System.out.println("✅ OffHeapDataset passed.");
+    }
+
+    public static void testOutOfCoreTraining() {
+        System.out.println("Testing out-of-core training...");
+
+        Random rand = new Random(24);
+        StringBuilder csv = new StringBuilder("Caffeine intake,SleepHours,Stress level,Age,Heart Rate\n");
+        for (int i = 0; i < 4000; i++) {
+            int caffeine = rand.nextInt(500);
+            double sleep = rand.nextDouble() * 10;
+            boolean high = (caffeine > 250) != (sleep > 5) != (rand.nextInt(8) == 0);
+            int stress = i % 17 == 0 ? 0 : (high ? 6 + rand.nextInt(5) : 1 + rand.nextInt(5));
+            csv.append(caffeine).append(',').append(i % 9 == 0 ? "" : String.valueOf(sleep)).append(',')
+               .append(stress).append(',').append(18 + rand.nextInt(50)).append(',').append(60 + rand.nextInt(40))
+               .append('\n');
+        }
+
+        DataProcessorImpl processor = new DataProcessorImpl();
+        RandomForestModel streamed = new RandomForestModel(6, 8, 0, 24L);
+        streamed.setProgressListener(null);
+        RandomForestModel capped = new RandomForestModel(6, 8, 12, 24L);
+        capped.setProgressListener(null);
+        ColumnarDataset data;
+        int passes;
+        try {
+            java.nio.file.Path in = java.nio.file.Files.createTempFile("outofcore", ".csv");
+            java.nio.file.Files.writeString(in, csv);
+            data = processor.filterData(new MappedCsvLoader().load(in));
+
+            // Small chunks, and a budget of a few histograms so a level needs several passes
+            OutOfCoreTrainer trainer = new OutOfCoreTrainer(streamed);
+            trainer.setChunkBytes(8 * 1024);
+            trainer.setHistogramBudgetBytes(4L * 4 * 256 * 2 * 5);
+            trainer.train(in, processor::filterData);
+            passes = trainer.getPasses();
+
+            new OutOfCoreTrainer(capped).train(in, processor::filterData);
+            java.nio.file.Files.delete(in);
+        } catch (java.io.IOException e) {
+            throw new AssertionError("Out-of-core training failed: " + e.getMessage());
+        }
+
+        RandomForestModel inMemory = new RandomForestModel(6, 8, 0, 24L);
+        inMemory.setProgressListener(null);
+        inMemory.setBootstrapMode(BootstrapSample.Mode.POISSON);
+        inMemory.train(BinnedDataset.of(data));
+
+        System.out.println("Expected: True, Evaluating: streamed trees equal in-memory histogram trees");
+        CompiledForest a = streamed.getCompiled();
+        CompiledForest b = inMemory.getCompiled();
+        assert Arrays.equals(a.roots(), b.roots()) && Arrays.equals(a.features(), b.features())
+            && Arrays.equals(a.thresholds(), b.thresholds()) && Arrays.equals(a.leafClasses(), b.leafClasses())
+            : "Streamed forest differs";
+        assert streamed.getTrainedRows() == data.numRows() : "Wrong trained row count";
+        System.out.println("Expected: True, Evaluating: levels were split over several passes");
+        assert passes > 9 : passes + " passes";
+
+        System.out.println("Expected: True, Evaluating: maxLeaves caps streamed trees");
+        for (DecisionTreeNode root : capped.getTrees()) {
+            assert leaves(root) <= 12 : "Too many leaves";
+        }
+
+        System.out.println("✅ Out-of-core training passed.");
+    }
+
+    public static void testDistributedTraining() {
+        System.out.println("Testing distributed training...");
+
+        Random rand = new Random(25);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            Map<String, Object> row = new HashMap<>();
+            int caffeine = rand.nextInt(500);
+            double sleep = rand.nextDouble() * 10;
+            row.put("Caffeine intake", caffeine);
+            row.put("SleepHours", sleep);
+            row.put("Age", 18 + rand.nextInt(50));
+            boolean high = (caffeine > 250) != (sleep > 5) != (rand.nextInt(8) == 0);
+            row.put("Stress level", high ? 6 + rand.nextInt(5) : 1 + rand.nextInt(5));
+            rows.add(row);
+        }
+        ColumnarDataset data = ColumnarDataset.fromRows(rows);
+
+        RandomForestModel local = new RandomForestModel(10, 8, 0, 25L);
+        local.setProgressListener(null);
+        local.setMtry(2);
+        local.train(data);
+
+        RandomForestModel remote = new RandomForestModel(10, 8, 0, 25L);
+        remote.setProgressListener(null);
+        remote.setMtry(2);
+        ForestCoordinator coordinator;
+        long treesBefore;
+        try (ForestWorker first = new ForestWorker(0);
+             ForestWorker second = new ForestWorker(0);
+             java.net.ServerSocket broken = new java.net.ServerSocket(0)) {
+            first.start();
+            second.start();
+            // Takes the job, then drops the connection on its first batch
+            long jobBytes = 8 + 29 + 8 + 4L * data.numRows() + 8;
+            for (String name : data.getFeatureNames()) jobBytes += 4 + name.length() + 1 + 8L * data.numRows();
+            byte[] job = new byte[(int) jobBytes];
+            Thread faulty = new Thread(() -> {
+                try (java.net.Socket socket = broken.accept()) {
+                    new java.io.DataInputStream(socket.getInputStream()).readFully(job);
+                } catch (java.io.IOException e) {
+                    // closed
+                }
+            });
+            faulty.setDaemon(true);
+            faulty.start();
+
+            List<java.net.InetSocketAddress> workers = List.of(
+                new java.net.InetSocketAddress("127.0.0.1", broken.getLocalPort()),
+                new java.net.InetSocketAddress("127.0.0.1", first.getPort()),
+                new java.net.InetSocketAddress("127.0.0.1", second.getPort()));
+            // A job announcing more rows than the worker's heap could hold is refused, not allocated
+            try (java.net.Socket socket = new java.net.Socket("127.0.0.1", first.getPort())) {
+                java.io.DataOutputStream out = new java.io.DataOutputStream(socket.getOutputStream());
+                ForestWorker.writeHello(out);
+                ForestWorker.writeJob(out, remote);
+                out.writeInt(1);
+                out.writeInt(Integer.MAX_VALUE);
+                out.flush();
+                socket.setSoTimeout(10_000);
+                System.out.println("Expected: True, Evaluating: a worker drops a job with an oversized row count");
+                assert socket.getInputStream().read() == -1 : "Worker accepted the job";
+            }
+
+            // Batches must lie within the job's forest: a huge count is refused, not grown
+            for (int[] batch : new int[][] {{0, Integer.MAX_VALUE}, {-1, 2}, {9, 2}}) {
+                try (java.net.Socket socket = new java.net.Socket("127.0.0.1", second.getPort())) {
+                    socket.setSoTimeout(10_000);
+                    java.io.DataOutputStream out = new java.io.DataOutputStream(
+                        new java.io.BufferedOutputStream(socket.getOutputStream()));
+                    ForestWorker.writeHello(out);
+                    ForestWorker.writeJob(out, remote);
+                    ForestWorker.writeDataset(out, data);
+                    out.writeInt(batch[0]);
+                    out.writeInt(batch[1]);
+                    out.flush();
+                    java.io.DataInputStream in = new java.io.DataInputStream(socket.getInputStream());
+                    System.out.println("Expected: True, Evaluating: a worker refuses trees " + batch[0] + " + " + batch[1]
+                        + " of a 10-tree forest");
+                    assert in.readByte() == ForestWorker.FAILED && in.readUTF().startsWith("Bad batch") : "Batch accepted";
+                }
+            }
+
+            coordinator = new ForestCoordinator(workers);
+            coordinator.setTreesPerTask(2);
+            treesBefore = PipelineMetrics.get().getTreesBuilt();
+            coordinator.train(remote, data);
+        } catch (java.io.IOException e) {
+            throw new AssertionError("Distributed training failed: " + e.getMessage());
+        }
+
+        System.out.println("Expected: True, Evaluating: worker-grown forest equals the locally trained one");
+        CompiledForest a = remote.getCompiled();
+        CompiledForest b = local.getCompiled();
+        assert Arrays.equals(a.roots(), b.roots()) && Arrays.equals(a.features(), b.features())
+            && Arrays.equals(a.thresholds(), b.thresholds()) && Arrays.equals(a.leafClasses(), b.leafClasses())
+            : "Distributed forest differs";
+        assert remote.getTrainedRows() == data.numRows() : "Wrong trained row count";
+
+        System.out.println("Expected: True, Evaluating: the coordinator records the trees the workers grew");
+        // The workers share this JVM, so each tree is counted by its worker and by the coordinator
+        assert PipelineMetrics.get().getTreesBuilt() == treesBefore + 2 * 10 : PipelineMetrics.get();
+
+        System.out.println("Expected: True, Evaluating: the failed worker's batch went to another worker");
+        assert coordinator.getReassignedTasks() >= 1 : coordinator.getReassignedTasks() + " reassigned";
+
+        System.out.println("Expected: True, Evaluating: replies with bad counts or node indices are rejected");
+        int rejected = 0;
+        int[][] replies = {
+            {2, 1, 0, 1, 0, 0, 0, 0},   // the root's children point back at itself
+            {2, 1, 3, 1, -1, 0, 0, 0},  // root past the last node
+            {2, 2, 0, 1, -1, 0, 0, 0},  // two trees where one was asked for
+            {2, 1, 0, -4},              // negative node count
+            {-1}                        // negative class count
+        };
+        for (int[] reply : replies) {
+            java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+            java.io.DataOutputStream out = new java.io.DataOutputStream(bytes);
+            try {
+                for (int i = 0; i < reply.length; i++) {
+                    if (i == 5) out.writeDouble(0.5); // threshold, after the feature
+                    out.writeInt(reply[i]);
+                }
+                ForestWorker.readTrees(new java.io.DataInputStream(new java.io.ByteArrayInputStream(bytes.toByteArray())),
+                    data.getFeatureNames(), 1);
+            } catch (java.io.IOException e) {
+                rejected++;
+            }
+        }
+        assert rejected == replies.length : rejected + " of " + replies.length + " bad replies rejected";
+
+        System.out.println("Expected: True, Evaluating: a coordinator with no live workers fails");
+        boolean failed = false;
+        try {
+            new ForestCoordinator(List.of(new java.net.InetSocketAddress("127.0.0.1", 1))).train(remote, data);
+        } catch (java.io.IOException e) {
+            failed = true;
+        }
+        assert failed : "Training without workers succeeded";
+
+        System.out.println("✅ Distributed training passed.");
+    }
 }
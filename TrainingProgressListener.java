@@ -0,0 +1,4 @@
+public interface TrainingProgressListener {
+    // Called once per finished tree; may be invoked concurrently from worker threads
+    void onTreeBuilt(int completed, int total);
+}